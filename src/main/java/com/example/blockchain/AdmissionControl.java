@@ -0,0 +1,129 @@
+package com.example.blockchain;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control in front of mining.
+ * Every request that mines a block must take a slot from a bounded pool of pending work and a token
+ * from its owner's bucket. A request that can't get either is rejected at once, so overload shows up
+ * as fast 429/503 responses instead of a growing pile of mining threads.
+ */
+@Component
+public class AdmissionControl {
+
+    public enum Result {
+        ADMITTED,
+        RATE_LIMITED,  // the owner has used up their tokens (429)
+        OVERLOADED     // the pending-work pool is full (503)
+    }
+
+    // Refills at a fixed rate up to a burst size
+    static class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int burst, int perMinute) {
+            this.capacity = burst;
+            this.tokensPerNano = perMinute / 60_000_000_000.0;
+            this.tokens = burst;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized boolean tryConsume() {
+            refill();
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized boolean isFull() {
+            refill();
+            return tokens >= capacity;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+
+    private final int maxPending;
+    private final int ownerBurst;
+    private final int ownerRatePerMinute;
+    private final Semaphore pendingWork;
+    private final Map<String, TokenBucket> ownerBuckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedRateLimited = new AtomicLong();
+    private final AtomicLong rejectedOverloaded = new AtomicLong();
+
+    public AdmissionControl(@Value("${blockchain.admission.max-pending:16}") int maxPending,
+                            @Value("${blockchain.admission.owner-burst:5}") int ownerBurst,
+                            @Value("${blockchain.admission.owner-rate-per-minute:20}") int ownerRatePerMinute) {
+        this.maxPending = maxPending;
+        this.ownerBurst = ownerBurst;
+        this.ownerRatePerMinute = ownerRatePerMinute;
+        this.pendingWork = new Semaphore(maxPending);
+    }
+
+    // Tries to admit one unit of mining work for an owner; call release() when an admitted request finishes
+    public Result tryAdmit(String owner) {
+        if (!pendingWork.tryAcquire()) {
+            rejectedOverloaded.incrementAndGet();
+            return Result.OVERLOADED;
+        }
+
+        TokenBucket bucket = ownerBuckets.computeIfAbsent(owner,
+                key -> new TokenBucket(ownerBurst, ownerRatePerMinute));
+        if (!bucket.tryConsume()) {
+            pendingWork.release();
+            rejectedRateLimited.incrementAndGet();
+            return Result.RATE_LIMITED;
+        }
+
+        admitted.incrementAndGet();
+        return Result.ADMITTED;
+    }
+
+    public void release() {
+        pendingWork.release();
+    }
+
+    // Seconds a rejected client should wait before retrying
+    public int retryAfterSeconds(Result result) {
+        if (result == Result.RATE_LIMITED) {
+            return (int) Math.ceil(60.0 / Math.max(1, ownerRatePerMinute));
+        }
+        return 1;
+    }
+
+    // Drops buckets that have refilled completely; a new bucket would start in the same state
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleBuckets() {
+        ownerBuckets.values().removeIf(TokenBucket::isFull);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", maxPending - pendingWork.availablePermits());
+        stats.put("maxPending", maxPending);
+        stats.put("admitted", admitted.get());
+        stats.put("rejectedRateLimited", rejectedRateLimited.get());
+        stats.put("rejectedOverloaded", rejectedOverloaded.get());
+        stats.put("trackedOwners", ownerBuckets.size());
+        return stats;
+    }
+}
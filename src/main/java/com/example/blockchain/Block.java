@@ -1,6 +1,9 @@
 package com.example.blockchain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.Date;
+import java.util.List;
 
 public class Block {
     public String hash;
@@ -8,27 +11,60 @@ public class Block {
     private String data; // data will be a simple message.
     private long timeStamp; // number of milliseconds since 1/1/1970.
     private int nonce;
+    private String merkleRoot; // root of the block's transactions; null on blocks mined before Merkle roots
 
     //Block Constructor.
     public Block(String data,String previousHash) {
         this.data = data;
         this.previousHash = previousHash;
         this.timeStamp = new Date().getTime();
+        this.merkleRoot = MerkleTree.computeRoot(getTransactions());
         this.hash = calculateHash(); //Making sure we do this after we set the other values.
     }
 
+    // Recomputes the hash from the block's contents, so tampered data is detected
     public String calculateHash() {
-        String calculatedHash = StringUtil.applySha256(
+        if (merkleRoot == null) {
+            // Legacy blocks hash the data directly
+            return StringUtil.applySha256(
+                    previousHash + Long.toString(timeStamp)
+                            + Integer.toString(nonce) + data);
+        }
+        return hashHeader(MerkleTree.computeRoot(getTransactions()));
+    }
+
+    // Computes the hash from the header fields alone, trusting the stored Merkle root
+    public String calculateHeaderHash() {
+        return merkleRoot == null ? calculateHash() : hashHeader(merkleRoot);
+    }
+
+    private String hashHeader(String root) {
+        return StringUtil.applySha256(
                 previousHash + Long.toString(timeStamp)
-                        + Integer.toString(nonce) + data);
-        return calculatedHash;
+                        + Integer.toString(nonce) + root);
+    }
+
+    // True if the stored Merkle root matches the block's transactions
+    public boolean hasValidMerkleRoot() {
+        return merkleRoot == null || merkleRoot.equals(MerkleTree.computeRoot(getTransactions()));
+    }
+
+    // Transactions committed to by the Merkle root. Each block currently carries a single transaction.
+    @JsonIgnore
+    public List<String> getTransactions() {
+        return List.of(data == null ? "" : data);
     }
 
     public void mineBlock(int difficulty) {
         String target = new String(new char[difficulty]).replace('\0', '0');
+        if (merkleRoot != null && MiningKernel.isVectorAvailable() && !hash.startsWith(target)) {
+            // Same nonce the loop below would reach, found several candidates at a time
+            nonce = MiningKernel.findNonce(previousHash + Long.toString(timeStamp), nonce + 1, merkleRoot, difficulty);
+            hash = calculateHeaderHash();
+        }
         while(!hash.substring(0,difficulty).equals(target)){
             nonce ++;
-            hash = calculateHash();
+            hash = calculateHeaderHash();
         }
         System.out.println("Block Mined!!! : " + hash);
     }
@@ -46,6 +82,10 @@ public class Block {
         return nonce;
     }
 
+    public String getMerkleRoot() {
+        return merkleRoot;
+    }
+
     // Setters for deserialization (used by Gson)
     public void setHash(String hash) {
         this.hash = hash;
@@ -67,6 +107,10 @@ public class Block {
         this.nonce = nonce;
     }
 
+    public void setMerkleRoot(String merkleRoot) {
+        this.merkleRoot = merkleRoot;
+    }
+
     // No-arg constructor for Gson deserialization
     public Block() {
     }
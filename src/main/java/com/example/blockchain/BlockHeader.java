@@ -0,0 +1,49 @@
+package com.example.blockchain;
+
+/**
+ * The fields of a block needed to follow chain linkage, without its data payload.
+ */
+public class BlockHeader {
+    private String hash;
+    private String previousHash;
+    private long timeStamp;
+    private int nonce;
+    private String merkleRoot;
+    private int height;
+
+    // No-arg constructor for JSON deserialization
+    public BlockHeader() {
+    }
+
+    public BlockHeader(Block block, int height) {
+        this.hash = block.hash;
+        this.previousHash = block.previousHash;
+        this.timeStamp = block.getTimeStamp();
+        this.nonce = block.getNonce();
+        this.merkleRoot = block.getMerkleRoot();
+        this.height = height;
+    }
+
+    // Recomputes the block hash from the header fields; only possible for blocks with a Merkle root
+    public String calculateHash() {
+        return StringUtil.applySha256(
+                previousHash + Long.toString(timeStamp)
+                        + Integer.toString(nonce) + merkleRoot);
+    }
+
+    // Getters
+    public String getHash() { return hash; }
+    public String getPreviousHash() { return previousHash; }
+    public long getTimeStamp() { return timeStamp; }
+    public int getNonce() { return nonce; }
+    public String getMerkleRoot() { return merkleRoot; }
+    public int getHeight() { return height; }
+
+    // Setters (for JSON deserialization)
+    public void setHash(String hash) { this.hash = hash; }
+    public void setPreviousHash(String previousHash) { this.previousHash = previousHash; }
+    public void setTimeStamp(long timeStamp) { this.timeStamp = timeStamp; }
+    public void setNonce(int nonce) { this.nonce = nonce; }
+    public void setMerkleRoot(String merkleRoot) { this.merkleRoot = merkleRoot; }
+    public void setHeight(int height) { this.height = height; }
+}
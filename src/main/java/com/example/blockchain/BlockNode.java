@@ -0,0 +1,29 @@
+package com.example.blockchain;
+
+/**
+ * A block's position in the block tree.
+ * Every known block gets a node, whether it is on the canonical chain or on a side branch.
+ * Nodes of sealed canonical blocks drop their block; ChainHub reads those from the block store by height.
+ */
+public class BlockNode {
+    private Block block;
+    private final BlockNode parent;
+    private final int height;
+    private final long cumulativeWork;
+
+    public BlockNode(Block block, BlockNode parent, long work) {
+        this.block = block;
+        this.parent = parent;
+        this.height = parent == null ? 0 : parent.height + 1;
+        this.cumulativeWork = parent == null ? work : parent.cumulativeWork + work;
+    }
+
+    // The block, or null if it has been sealed into a segment
+    public Block getBlock() { return block; }
+    public BlockNode getParent() { return parent; }
+    public int getHeight() { return height; }
+    public long getCumulativeWork() { return cumulativeWork; }
+
+    public void releaseBlock() { this.block = null; }
+    public void restoreBlock(Block block) { this.block = block; }
+}
@@ -0,0 +1,249 @@
+package com.example.blockchain;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A sealed run of consecutive canonical blocks, stored in one compressed file that is never modified.
+ * The file holds the blocks' headers and an offset per block, followed by the blocks' JSON compressed
+ * with Deflater. Opening a segment reads only the headers and offsets, so they can stay in memory;
+ * the payload is inflated when a block in the segment is read, and one block is parsed from its offset.
+ *
+ * Layout: magic, start height, block count, count + 1 payload offsets, payload CRC32,
+ * then the compressed headers and the compressed payload, each preceded by its length.
+ */
+public class BlockSegment {
+
+    private static final int MAGIC = 0x50455453;  // "PETS"
+    private static final String PREFIX = "blocks-";
+    private static final String SUFFIX = ".seg";
+    private static final Gson gson = new Gson();
+
+    private final Path file;
+    private final int startHeight;
+    private final List<BlockHeader> headers;
+    private final int[] offsets;
+    private final int payloadCrc;
+    private final long payloadPosition;
+    private final int payloadLength;
+
+    private BlockSegment(Path file, int startHeight, List<BlockHeader> headers, int[] offsets, int payloadCrc,
+                         long payloadPosition, int payloadLength) {
+        this.file = file;
+        this.startHeight = startHeight;
+        this.headers = headers;
+        this.offsets = offsets;
+        this.payloadCrc = payloadCrc;
+        this.payloadPosition = payloadPosition;
+        this.payloadLength = payloadLength;
+    }
+
+    // Seals blocks starting at startHeight into a new segment file in dir
+    public static BlockSegment write(Path dir, int startHeight, List<Block> blocks) throws IOException {
+        List<BlockHeader> headers = new ArrayList<>(blocks.size());
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        int[] offsets = new int[blocks.size() + 1];
+        for (int i = 0; i < blocks.size(); i++) {
+            headers.add(new BlockHeader(blocks.get(i), startHeight + i));
+            offsets[i] = json.size();
+            json.write(gson.toJson(blocks.get(i)).getBytes(StandardCharsets.UTF_8));
+        }
+        offsets[blocks.size()] = json.size();
+        byte[] payload = json.toByteArray();
+        byte[] compressedHeaders = deflate(gson.toJson(headers).getBytes(StandardCharsets.UTF_8));
+        byte[] compressedPayload = deflate(payload);
+
+        Files.createDirectories(dir);
+        Path file = dir.resolve(fileName(startHeight));
+        // Written under a temporary name and moved into place, so a segment file is either complete or absent
+        Path temp = dir.resolve(fileName(startHeight) + ".tmp");
+        long payloadPosition;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(startHeight);
+            out.writeInt(blocks.size());
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(crc(payload));
+            out.writeInt(compressedHeaders.length);
+            out.write(compressedHeaders);
+            out.writeInt(compressedPayload.length);
+            payloadPosition = out.size();
+            out.write(compressedPayload);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new BlockSegment(file, startHeight, headers, offsets, crc(payload), payloadPosition,
+                compressedPayload.length);
+    }
+
+    // Reads a segment's headers and offsets, leaving the payload on disk
+    public static BlockSegment open(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a block segment: " + file);
+            }
+            int startHeight = in.readInt();
+            int count = in.readInt();
+            int[] offsets = new int[count + 1];
+            for (int i = 0; i <= count; i++) {
+                offsets[i] = in.readInt();
+            }
+            int payloadCrc = in.readInt();
+            byte[] compressedHeaders = new byte[in.readInt()];
+            in.readFully(compressedHeaders);
+            int payloadLength = in.readInt();
+            long payloadPosition = 4L * (3 + offsets.length + 2) + compressedHeaders.length + 4;
+
+            String headersJson = new String(inflate(compressedHeaders, -1), StandardCharsets.UTF_8);
+            List<BlockHeader> headers = gson.fromJson(headersJson, new TypeToken<List<BlockHeader>>(){}.getType());
+            if (headers.size() != count) {
+                throw new IOException("Header count does not match block count in " + file);
+            }
+            return new BlockSegment(file, startHeight, headers, offsets, payloadCrc, payloadPosition, payloadLength);
+        }
+    }
+
+    // Opens every segment in dir, ordered by start height
+    public static List<BlockSegment> openAll(Path dir) throws IOException {
+        List<BlockSegment> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return segments;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(BlockSegment::isSegmentFile).sorted().toList();
+        }
+        for (Path file : files) {
+            try {
+                segments.add(open(file));
+            } catch (IOException e) {
+                throw new IOException("Can't read block segment " + file + ": " + e, e);
+            }
+        }
+        return segments;
+    }
+
+    public static boolean isSegmentFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    // Zero-padded so that listing the directory in name order lists segments in height order
+    private static String fileName(int startHeight) {
+        return PREFIX + String.format("%010d", startHeight) + SUFFIX;
+    }
+
+    // The file a segment starting at startHeight is written to
+    public static Path fileFor(Path dir, int startHeight) {
+        return dir.resolve(fileName(startHeight));
+    }
+
+    // Reads and inflates the block payload; the result is what readBlock parses from
+    public byte[] readPayload() throws IOException {
+        byte[] compressed = new byte[payloadLength];
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            in.seek(payloadPosition);
+            in.readFully(compressed);
+        }
+        byte[] payload = inflate(compressed, offsets[offsets.length - 1]);
+        if (crc(payload) != payloadCrc) {
+            throw new IOException("Checksum mismatch in " + file);
+        }
+        return payload;
+    }
+
+    // Parses the block at a height from an inflated payload
+    public Block readBlock(byte[] payload, int height) {
+        int i = height - startHeight;
+        return gson.fromJson(new String(payload, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8),
+                Block.class);
+    }
+
+    // Every block in the segment, in height order
+    public List<Block> readBlocks() throws IOException {
+        byte[] payload = readPayload();
+        List<Block> blocks = new ArrayList<>(size());
+        for (int height = startHeight; height < endHeight(); height++) {
+            blocks.add(readBlock(payload, height));
+        }
+        return blocks;
+    }
+
+    public Path getFile() { return file; }
+    public int getStartHeight() { return startHeight; }
+    public int endHeight() { return startHeight + headers.size(); }
+    public int size() { return headers.size(); }
+
+    public BlockHeader getHeader(int height) {
+        return headers.get(height - startHeight);
+    }
+
+    // Sealed blocks are read far less often than they are stored, so compress as hard as Deflater can
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Inflates data; expectedLength sizes the output exactly when known, -1 otherwise
+    private static byte[] inflate(byte[] data, int expectedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            // One spare byte when the length is known, so running past it is detected rather than truncated
+            byte[] out = new byte[expectedLength >= 0 ? expectedLength + 1 : Math.max(64, data.length * 4)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == out.length) {
+                    if (expectedLength >= 0) {
+                        throw new IOException("Segment payload is longer than expected");
+                    }
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int inflated = inflater.inflate(out, length, out.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated segment data");
+                }
+                length += inflated;
+            }
+            if (expectedLength >= 0 && length != expectedLength) {
+                throw new IOException("Segment payload is shorter than expected");
+            }
+            return Arrays.copyOf(out, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt segment data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
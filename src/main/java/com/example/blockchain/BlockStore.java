@@ -0,0 +1,374 @@
+package com.example.blockchain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The canonical chain by height, in two tiers: old blocks sealed into compressed BlockSegments on disk,
+ * and recent blocks held in memory. It is a List, so callers read any height without knowing which tier
+ * it is in; a sealed block is inflated from its segment on access, with the last few inflated segments
+ * cached. Headers of sealed blocks stay in memory through their segments.
+ * Blocks are only added and removed at the tip. Removing a sealed block (a reorg deeper than the hot tier)
+ * unseals its segment back into memory; the segment's file is deleted on the next save. Segment files the
+ * store didn't write or unseal itself, such as ones restore() couldn't use, are never deleted, only moved aside.
+ */
+public class BlockStore extends AbstractList<Block> implements RandomAccess {
+
+    // Inflated segments kept for reads; a sequential scan only ever needs the current one
+    private static final int CACHED_SEGMENTS = 4;
+
+    private final List<BlockSegment> segments = new ArrayList<>();
+    private final ArrayList<Block> hot = new ArrayList<>();
+    private int sealedSize;
+
+    // Files of segments this store unsealed; they hold nothing that isn't in memory, so they may be deleted
+    private final Set<Path> unsealedFiles = new HashSet<>();
+
+    private final Map<BlockSegment, byte[]> payloads = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BlockSegment, byte[]> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+
+    @Override
+    public int size() {
+        return sealedSize + hot.size();
+    }
+
+    @Override
+    public Block get(int index) {
+        Objects.checkIndex(index, size());
+        if (index >= sealedSize) {
+            return hot.get(index - sealedSize);
+        }
+        BlockSegment segment = segmentAt(segments, index);
+        return segment.readBlock(payload(segment), index);
+    }
+
+    // Read-only copy of the chain as it is now, for long reads without holding the caller's lock. Only segment
+    // references and the hot list are copied; sealed blocks are inflated when read. Segments never change, but
+    // one a reorg unsealed is deleted or rewritten by a later save, so reading it after that throws UncheckedIOException.
+    public List<Block> snapshot() {
+        List<BlockSegment> sealed = new ArrayList<>(segments);
+        List<Block> recent = new ArrayList<>(hot);
+        int sealedCount = sealedSize;
+        return new Snapshot(sealed, recent, sealedCount);
+    }
+
+    private class Snapshot extends AbstractList<Block> implements RandomAccess {
+        private final List<BlockSegment> sealed;
+        private final List<Block> recent;
+        private final int sealedCount;
+
+        Snapshot(List<BlockSegment> sealed, List<Block> recent, int sealedCount) {
+            this.sealed = sealed;
+            this.recent = recent;
+            this.sealedCount = sealedCount;
+        }
+
+        @Override
+        public int size() {
+            return sealedCount + recent.size();
+        }
+
+        @Override
+        public Block get(int index) {
+            Objects.checkIndex(index, size());
+            if (index >= sealedCount) {
+                return recent.get(index - sealedCount);
+            }
+            BlockSegment segment = segmentAt(sealed, index);
+            return segment.readBlock(payload(segment), index);
+        }
+    }
+
+    // Only appending at the tip is supported
+    @Override
+    public void add(int index, Block block) {
+        if (index != size()) {
+            throw new UnsupportedOperationException("Blocks can only be added at the tip");
+        }
+        hot.add(block);
+        modCount++;
+    }
+
+    // Only removing the tip is supported
+    @Override
+    public Block remove(int index) {
+        if (index != size() - 1) {
+            throw new UnsupportedOperationException("Only the tip block can be removed");
+        }
+        if (hot.isEmpty()) {
+            unsealLast();
+        }
+        modCount++;
+        return hot.remove(hot.size() - 1);
+    }
+
+    // Forgets both tiers; segment files are left for the next save to clean up
+    @Override
+    public void clear() {
+        segments.clear();
+        hot.clear();
+        unsealedFiles.clear();
+        sealedSize = 0;
+        synchronized (payloads) {
+            payloads.clear();
+        }
+        modCount++;
+    }
+
+    // Number of blocks in sealed segments; they are the heights below this
+    public int sealedSize() {
+        return sealedSize;
+    }
+
+    // Blocks held in memory, from height sealedSize() up
+    public List<Block> getHotBlocks() {
+        return Collections.unmodifiableList(hot);
+    }
+
+    // Header of a sealed block, without inflating its segment
+    public BlockHeader getSealedHeader(int height) {
+        Objects.checkIndex(height, sealedSize);
+        return segmentAt(segments, height).getHeader(height);
+    }
+
+    // Seals the oldest hot blocks into segments of segmentBlocks each, keeping at least hotDepth blocks in memory.
+    // Returns the number of blocks sealed. Writes files while the caller holds its lock; saves use the steps below.
+    public int seal(Path dir, int hotDepth, int segmentBlocks) throws IOException {
+        List<BlockSegment> written = writeSegments(dir, sealedSize, sealableRuns(hotDepth, segmentBlocks), unsealedFiles);
+        unsealedFiles.removeAll(segmentFileNames(written));
+        return install(written);
+    }
+
+    // Deletes segment files in dir that a reorg unsealed; any other segment file that isn't part of the store
+    // is moved aside, since its blocks may exist nowhere else
+    public void deleteStaleSegments(Path dir) throws IOException {
+        removeStaleSegments(dir, segmentFileNames(segments), new HashSet<>(unsealedFiles));
+        unsealedFiles.clear();
+    }
+
+    // Copies of the runs of segmentBlocks oldest hot blocks that can be sealed while keeping hotDepth in memory
+    public List<List<Block>> sealableRuns(int hotDepth, int segmentBlocks) {
+        List<List<Block>> runs = new ArrayList<>();
+        for (int start = 0; hot.size() - start - hotDepth >= segmentBlocks; start += segmentBlocks) {
+            runs.add(new ArrayList<>(hot.subList(start, start + segmentBlocks)));
+        }
+        return runs;
+    }
+
+    /**
+     * Writes runs of blocks into consecutive segment files from startHeight, without touching the store, so
+     * it can run outside the caller's lock. An existing file in the way is overwritten if it is in replaceable
+     * (a segment this store unsealed) and moved aside otherwise.
+     */
+    public static List<BlockSegment> writeSegments(Path dir, int startHeight, List<List<Block>> runs,
+                                                   Set<Path> replaceable) throws IOException {
+        List<BlockSegment> written = new ArrayList<>();
+        int height = startHeight;
+        for (List<Block> run : runs) {
+            Path file = BlockSegment.fileFor(dir, height);
+            if (Files.exists(file) && !replaceable.contains(file.getFileName())) {
+                moveAside(file);
+            }
+            written.add(BlockSegment.write(dir, height, run));
+            height += run.size();
+        }
+        return written;
+    }
+
+    /**
+     * Replaces the oldest hot blocks with written segments, for as long as each segment starts at the sealed
+     * height and holds exactly the hot blocks there. Stops at the first one that doesn't, e.g. after a reorg
+     * while it was being written. Returns the number of blocks sealed.
+     */
+    public int install(List<BlockSegment> written) {
+        int sealed = 0;
+        for (BlockSegment segment : written) {
+            int count = segment.endHeight() - segment.getStartHeight();
+            if (segment.getStartHeight() != sealedSize || count > hot.size()) {
+                break;
+            }
+            boolean matches = true;
+            for (int i = 0; i < count && matches; i++) {
+                matches = hot.get(i).hash.equals(segment.getHeader(sealedSize + i).getHash());
+            }
+            if (!matches) {
+                break;
+            }
+            segments.add(segment);
+            hot.subList(0, count).clear();
+            sealedSize += count;
+            sealed += count;
+            modCount++;
+        }
+        return sealed;
+    }
+
+    // Names of the files of segments a reorg unsealed since they were last cleaned up
+    public Set<Path> getUnsealedFiles() {
+        return new HashSet<>(unsealedFiles);
+    }
+
+    // Marks unsealed segment files as handled, once they have been deleted or overwritten
+    public void forgetUnsealedFiles(Set<Path> names) {
+        unsealedFiles.removeAll(names);
+    }
+
+    // Names of the files the store needs: its segments, and unsealed ones a save may not have caught up with yet
+    public Set<Path> getNeededFiles() {
+        Set<Path> needed = segmentFileNames(segments);
+        needed.addAll(unsealedFiles);
+        return needed;
+    }
+
+    /**
+     * Cleans up segment files in dir that aren't in needed: ones in deletable (unsealed segments whose blocks
+     * are saved elsewhere) are deleted, and any other is moved aside, since its blocks may exist nowhere else.
+     */
+    public static void removeStaleSegments(Path dir, Set<Path> needed, Set<Path> deletable) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> stale;
+        try (Stream<Path> listing = Files.list(dir)) {
+            stale = listing.filter(BlockSegment::isSegmentFile)
+                    .filter(file -> !needed.contains(file.getFileName()))
+                    .toList();
+        }
+        for (Path file : stale) {
+            if (deletable.contains(file.getFileName())) {
+                Files.delete(file);
+            } else {
+                moveAside(file);
+            }
+        }
+    }
+
+    private static Set<Path> segmentFileNames(List<BlockSegment> segments) {
+        Set<Path> names = new HashSet<>();
+        for (BlockSegment segment : segments) {
+            names.add(segment.getFile().getFileName());
+        }
+        return names;
+    }
+
+    // Renames a segment file so it is no longer listed as a segment, keeping its contents
+    private static void moveAside(Path file) throws IOException {
+        Path target = file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis() + ".unused");
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Moved unused block segment " + file.getFileName() + " aside to " + target.getFileName());
+    }
+
+    /**
+     * Replaces the contents with sealed segments followed by the saved hot blocks.
+     * Segments are used from height 0 for as long as they follow on from each other. The saved blocks
+     * are placed after their parent; where they overlap the segments (a save interrupted after sealing,
+     * or a reorg into sealed heights), the saved blocks win from the first height that differs.
+     */
+    public void restore(List<BlockSegment> sealed, List<Block> saved) throws IOException {
+        clear();
+        String previous = ChainHub.GENESIS_PREVIOUS_HASH;
+        for (BlockSegment segment : sealed) {
+            if (segment.getStartHeight() != sealedSize
+                    || !previous.equals(segment.getHeader(segment.getStartHeight()).getPreviousHash())) {
+                System.out.println("Ignoring block segment " + segment.getFile().getFileName()
+                        + ": it does not follow on from the segments before it");
+                break;
+            }
+            segments.add(segment);
+            sealedSize = segment.endHeight();
+            previous = segment.getHeader(sealedSize - 1).getHash();
+        }
+        if (saved.isEmpty()) {
+            return;
+        }
+
+        int start = heightOf(saved.get(0).previousHash) + 1;
+        int height = start;
+        while (height < size() && height - start < saved.size()
+                && hashAt(height).equals(saved.get(height - start).hash)) {
+            height++;
+        }
+        while (size() > height) {
+            remove(size() - 1);
+        }
+        for (Block block : saved.subList(height - start, saved.size())) {
+            add(block);
+        }
+    }
+
+    // Height of a block in the store by hash, -1 for the genesis parent; throws if absent
+    private int heightOf(String hash) throws IOException {
+        if (ChainHub.GENESIS_PREVIOUS_HASH.equals(hash)) {
+            return -1;
+        }
+        for (int height = size() - 1; height >= 0; height--) {
+            if (hashAt(height).equals(hash)) {
+                return height;
+            }
+        }
+        throw new IOException("Saved blocks don't follow on from the sealed segments; is a segment missing?");
+    }
+
+    private String hashAt(int height) {
+        return height < sealedSize ? getSealedHeader(height).getHash() : hot.get(height - sealedSize).hash;
+    }
+
+    private static BlockSegment segmentAt(List<BlockSegment> segments, int height) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segments.get(mid).getStartHeight() <= height) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return segments.get(low);
+    }
+
+    // Inflated payload of a segment, from the cache if it was read recently
+    private byte[] payload(BlockSegment segment) {
+        synchronized (payloads) {
+            byte[] payload = payloads.get(segment);
+            if (payload != null) {
+                return payload;
+            }
+        }
+        try {
+            // Inflated outside the lock so parallel readers of different segments don't queue
+            byte[] payload = segment.readPayload();
+            synchronized (payloads) {
+                payloads.put(segment, payload);
+            }
+            return payload;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading block segment " + segment.getFile(), e);
+        }
+    }
+
+    // Moves the newest segment's blocks back into memory
+    private void unsealLast() {
+        BlockSegment segment = segments.remove(segments.size() - 1);
+        try {
+            hot.addAll(0, segment.readBlocks());
+        } catch (IOException e) {
+            segments.add(segment);
+            throw new UncheckedIOException("Error unsealing block segment " + segment.getFile(), e);
+        }
+        sealedSize = segment.getStartHeight();
+        unsealedFiles.add(segment.getFile().getFileName());
+        synchronized (payloads) {
+            payloads.remove(segment);
+        }
+    }
+}
@@ -2,69 +2,592 @@ package com.example.blockchain;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 import java.lang.reflect.Type;
 
 public class ChainHub {
 
-    public static ArrayList<Block> blockChain = new ArrayList<Block>();
+    // Canonical chain; blocks deeper than coldDepth are sealed into compressed segments on save
+    public static final BlockStore blockChain = new BlockStore();
     public static int difficulty = 5;
+    // Blocks held in memory and written to blockchain.json; older ones live in SEGMENT_DIR
     private static final String BLOCKCHAIN_FILE = "blockchain.json";
+    private static final String SEGMENT_DIR = "segments";
+    // Header of the tip at the last save, small enough to read before the chain itself
+    private static final String TIP_FILE = "chain_tip.json";
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    // Load blockchain from file
-    public static void loadBlockchain() {
-        try {
-            File file = new File(BLOCKCHAIN_FILE);
-            if (!file.exists()) {
-                System.out.println("Blockchain file not found. Starting with empty blockchain.");
-                return;
+    // Directory holding this node's data files, so several nodes can share a working directory
+    private static Path dataDirectory = Paths.get("");
+
+    // previousHash used by a genesis block
+    public static final String GENESIS_PREVIOUS_HASH = "0";
+
+    // Every known block keyed by hash, including blocks on side branches
+    private static final Map<String, BlockNode> blockTree = new HashMap<>();
+
+    // Node at the end of the canonical chain (the branch with the most cumulative work)
+    private static BlockNode tip;
+
+    // Compact copy of the canonical chain without payloads, for linkage/PoW checks and header queries
+    private static final ArrayList<BlockHeader> headerChain = new ArrayList<>();
+
+    // Block time by canonical height, for time-range queries
+    private static final TimestampIndex timestampIndex = new TimestampIndex();
+
+    // Blocks below this height were mined before Merkle roots and may lack one. It is the leading run of
+    // root-less blocks in the chain as loaded from disk, and every block above it needs a Merkle root.
+    private static int legacyHeight = 0;
+
+    // True once the data directory has been loaded; until then saving could overwrite files that weren't read
+    private static boolean loaded = false;
+
+    // Blocks kept hot behind the tip before sealing, and blocks per sealed segment; a negative depth disables sealing
+    private static int coldDepth = -1;
+    private static int segmentBlocks = 1000;
+
+    // Held for a whole save, so two saves don't write the same files at once
+    private static final Object saveLock = new Object();
+
+    private static final List<ChainListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Last full validation and the tip it covered, so frequent callers validate each tip only once
+    private static final Object validationLock = new Object();
+    private static String validatedTip;
+    private static boolean validatedResult;
+
+    // Outcome of offering a block to the chain
+    public enum AddResult {
+        EXTENDED,     // appended to the canonical tip
+        REORGANIZED,  // made a side branch heavier than the canonical chain
+        SIDE_BRANCH,  // stored, but the canonical chain still has more work
+        DUPLICATE,    // already known
+        ORPHAN,       // parent is unknown
+        INVALID       // hash, proof of work, a signature or its transaction does not check out
+    }
+
+    public static void addListener(ChainListener listener) {
+        listeners.add(listener);
+    }
+
+    // Hash of the current canonical tip, or "0" when the chain is empty
+    public static synchronized String getTipHash() {
+        return blockChain.isEmpty()
+                ? GENESIS_PREVIOUS_HASH
+                : blockChain.get(blockChain.size() - 1).hash;
+    }
+
+    public static synchronized BlockNode getNode(String hash) {
+        return blockTree.get(hash);
+    }
+
+    // Adds a block to the block tree and switches the canonical chain if its branch now has the most work
+    public static AddResult addBlock(Block block) {
+        // Signature checks are the expensive part, so they run before taking the chain lock
+        return addBlock(block, SignatureVerifier.verifyBlock(block));
+    }
+
+    // Adds blocks in order, verifying their signatures in parallel first.
+    // Stops after the first block that is invalid or orphaned; returns a result per block attempted.
+    public static List<AddResult> addBlocks(List<Block> blocks) {
+        boolean[] signed = SignatureVerifier.verifyBlocks(blocks);
+        List<AddResult> results = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            AddResult result = addBlock(blocks.get(i), signed[i]);
+            results.add(result);
+            if (result == AddResult.INVALID || result == AddResult.ORPHAN) {
+                break;
             }
+        }
+        return results;
+    }
+
+    private static synchronized AddResult addBlock(Block block, boolean signaturesValid) {
+        if (blockTree.containsKey(block.hash)) {
+            return AddResult.DUPLICATE;
+        }
 
-            String content = new String(Files.readAllBytes(Paths.get(BLOCKCHAIN_FILE)));
-            if (content.trim().isEmpty()) {
-                System.out.println("Blockchain file is empty. Starting with empty blockchain.");
-                return;
+        String hashTarget = new String(new char[difficulty]).replace('\0', '0');
+        if (!signaturesValid || !block.hash.equals(block.calculateHash()) || !block.hasValidMerkleRoot()
+                || !block.hash.startsWith(hashTarget)) {
+            return AddResult.INVALID;
+        }
+
+        BlockNode parent = null;
+        if (!GENESIS_PREVIOUS_HASH.equals(block.previousHash)) {
+            parent = blockTree.get(block.previousHash);
+            if (parent == null) {
+                return AddResult.ORPHAN;
             }
+        }
+
+        BlockNode node = new BlockNode(block, parent, blockWork());
+        if (block.getMerkleRoot() == null && node.getHeight() >= legacyHeight) {
+            System.out.println("Rejecting block " + block.hash + ": no Merkle root above legacy height " + legacyHeight);
+            return AddResult.INVALID;
+        }
+
+        if (parent == tip) {
+            if (!canConnect(block)) {
+                return AddResult.INVALID;
+            }
+            blockTree.put(block.hash, node);
+            connect(block);
+            tip = node;
+            return AddResult.EXTENDED;
+        }
+
+        // A side branch block's transaction is only checked once its branch becomes canonical
+        blockTree.put(block.hash, node);
+        if (node.getCumulativeWork() > tip.getCumulativeWork()) {
+            return reorganize(node) ? AddResult.REORGANIZED : AddResult.INVALID;
+        }
+        return AddResult.SIDE_BRANCH;
+    }
+
+    // Switches the canonical chain to end at newTip, disconnecting and connecting blocks one at a time.
+    // If a block on the new branch can't be connected, the old chain is put back, that block and its
+    // descendants are forgotten, and false is returned.
+    private static boolean reorganize(BlockNode newTip) {
+        BlockNode forkPoint = findForkPoint(tip, newTip);
+        int keep = forkPoint == null ? 0 : forkPoint.getHeight() + 1;
+        System.out.println("Reorganizing chain: dropping " + (blockChain.size() - keep)
+                + " block(s), new tip " + newTip.getBlock().hash);
+
+        List<Block> disconnected = new ArrayList<>();
+        while (blockChain.size() > keep) {
+            disconnected.add(disconnectTip());
+        }
 
-            Type listType = new TypeToken<ArrayList<Block>>(){}.getType();
-            ArrayList<Block> loaded = gson.fromJson(content, listType);
-            
-            if (loaded != null) {
-                blockChain = loaded;
-                System.out.println("Blockchain loaded successfully. Blocks: " + blockChain.size());
+        List<Block> branch = new ArrayList<>();
+        for (BlockNode node = newTip; node != forkPoint; node = node.getParent()) {
+            branch.add(node.getBlock());
+        }
+        Collections.reverse(branch);
+
+        for (Block block : branch) {
+            if (!canConnect(block)) {
+                System.out.println("Block " + block.hash + " can't be connected; keeping the current chain");
+                while (blockChain.size() > keep) {
+                    disconnectTip();
+                }
+                Collections.reverse(disconnected);
+                disconnected.forEach(ChainHub::connect);
+                forgetBranch(blockTree.get(block.hash));
+                return false;
+            }
+            connect(block);
+        }
+        tip = newTip;
+        return true;
+    }
+
+    // True if every listener accepts the block on top of the current canonical chain
+    private static boolean canConnect(Block block) {
+        for (ChainListener listener : listeners) {
+            if (!listener.canConnect(block)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Appends a block to the canonical chain and its indexes
+    private static void connect(Block block) {
+        blockChain.add(block);
+        headerChain.add(new BlockHeader(block, headerChain.size()));
+        timestampIndex.append(block.getTimeStamp());
+        for (ChainListener listener : listeners) {
+            listener.onBlockConnected(block);
+        }
+    }
+
+    // Removes the canonical tip block from the chain and its indexes
+    private static Block disconnectTip() {
+        int height = blockChain.size() - 1;
+        Block removed = blockChain.remove(height);
+        // A block leaving the canonical chain may have been sealed; its node must hold it again
+        blockTree.get(removed.hash).restoreBlock(removed);
+        headerChain.remove(height);
+        timestampIndex.truncate(height);
+        for (ChainListener listener : listeners) {
+            listener.onBlockDisconnected(removed);
+        }
+        return removed;
+    }
+
+    // Drops a rejected side branch node and every node built on it from the block tree
+    private static void forgetBranch(BlockNode rejected) {
+        blockTree.values().removeIf(node -> {
+            for (BlockNode n = node; n != null && n.getHeight() >= rejected.getHeight(); n = n.getParent()) {
+                if (n == rejected) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    // Returns the last block shared by both branches, or null if they have different genesis blocks
+    private static BlockNode findForkPoint(BlockNode a, BlockNode b) {
+        while (a != null && b != null && a != b) {
+            if (a.getHeight() >= b.getHeight()) {
+                a = a.getParent();
             } else {
-                System.out.println("Failed to load blockchain. Starting with empty blockchain.");
+                b = b.getParent();
+            }
+        }
+        return a == b ? a : null;
+    }
+
+    // Expected number of hashes needed to mine one block at the current difficulty
+    private static long blockWork() {
+        return 1L << (4 * difficulty);
+    }
+
+    // Rebuilds the block tree from the canonical chain without notifying listeners.
+    // Sealed blocks are indexed from their segments' headers, so their payloads aren't read.
+    private static void indexCanonicalChain() {
+        blockTree.clear();
+        headerChain.clear();
+        timestampIndex.clear();
+        tip = null;
+        for (int height = 0; height < blockChain.sealedSize(); height++) {
+            BlockHeader header = blockChain.getSealedHeader(height);
+            tip = new BlockNode(null, tip, blockWork());
+            blockTree.put(header.getHash(), tip);
+            headerChain.add(header);
+            timestampIndex.append(header.getTimeStamp());
+        }
+        for (Block block : blockChain.getHotBlocks()) {
+            tip = new BlockNode(block, tip, blockWork());
+            blockTree.put(block.hash, tip);
+            headerChain.add(new BlockHeader(block, tip.getHeight()));
+            timestampIndex.append(block.getTimeStamp());
+        }
+        legacyHeight = 0;
+        while (legacyHeight < headerChain.size() && headerChain.get(legacyHeight).getMerkleRoot() == null) {
+            legacyHeight++;
+        }
+    }
+
+    // Height of the first block that must have a Merkle root
+    public static synchronized int getLegacyHeight() {
+        return legacyHeight;
+    }
+
+    // A node's block, read from the block store if it has been sealed
+    private static Block blockOf(BlockNode node) {
+        return node.getBlock() != null ? node.getBlock() : blockChain.get(node.getHeight());
+    }
+
+    public static synchronized int getHeight() {
+        return blockChain.size() - 1;
+    }
+
+    public static synchronized long getTipWork() {
+        return tip == null ? 0 : tip.getCumulativeWork();
+    }
+
+    // Returns a known block by hash, canonical or not
+    public static synchronized Block getBlock(String hash) {
+        BlockNode node = blockTree.get(hash);
+        return node == null ? null : blockOf(node);
+    }
+
+    // True if the block is on the canonical chain rather than a side branch
+    public static synchronized boolean isCanonical(String hash) {
+        BlockNode node = blockTree.get(hash);
+        return node != null && node.getHeight() < headerChain.size()
+                && headerChain.get(node.getHeight()).getHash().equals(hash);
+    }
+
+    // Returns up to limit canonical blocks starting at the given height
+    public static synchronized List<Block> getBlocksFrom(int fromHeight, int limit) {
+        if (fromHeight < 0 || fromHeight >= blockChain.size()) {
+            return new ArrayList<>();
+        }
+        int to = (int) Math.min(blockChain.size(), (long) fromHeight + limit);
+        return new ArrayList<>(blockChain.subList(fromHeight, to));
+    }
+
+    // The whole canonical chain as of now. Taking it is cheap; sealed blocks are only inflated as the caller
+    // reads them, outside the chain lock. See BlockStore.snapshot().
+    public static synchronized List<Block> getChainSnapshot() {
+        return blockChain.snapshot();
+    }
+
+    // Returns up to limit canonical headers starting at the given height, without touching block payloads
+    public static synchronized List<BlockHeader> getHeadersFrom(int fromHeight, int limit) {
+        if (fromHeight < 0 || fromHeight >= headerChain.size()) {
+            return new ArrayList<>();
+        }
+        int to = (int) Math.min(headerChain.size(), (long) fromHeight + limit);
+        return new ArrayList<>(headerChain.subList(fromHeight, to));
+    }
+
+    // Canonical block hashes for a peer to find where its chain and ours split: the newest ten, then steps
+    // back that double each time, then height 0. Tip first, and about 10 + log2(height) hashes long.
+    public static synchronized List<String> getLocator() {
+        List<String> locator = new ArrayList<>();
+        int step = 1;
+        for (int height = headerChain.size() - 1; height > 0; height -= step) {
+            locator.add(headerChain.get(height).getHash());
+            if (locator.size() >= 10) {
+                step *= 2;
+            }
+        }
+        if (!headerChain.isEmpty()) {
+            locator.add(headerChain.get(0).getHash());
+        }
+        return locator;
+    }
+
+    // Up to limit canonical headers after the first locator hash on our canonical chain, i.e. after the point
+    // where the locator's chain forks from ours; from height 0 if none of them is on it
+    public static synchronized List<BlockHeader> getHeadersAfter(List<String> locator, int limit) {
+        for (String hash : locator) {
+            if (isCanonical(hash)) {
+                return getHeadersFrom(blockTree.get(hash).getHeight() + 1, limit);
+            }
+        }
+        return getHeadersFrom(0, limit);
+    }
+
+    // Canonical heights [start, end) to scan for blocks whose time falls within [from, to]. Every such block is
+    // in the range, but not every block in it matches (see TimestampIndex), so callers check each block's time.
+    public static synchronized int[] getHeightRange(long from, long to) {
+        return new int[] { timestampIndex.firstAtOrAfter(from), timestampIndex.firstAfter(to) };
+    }
+
+    public static synchronized void setDataDirectory(String directory) {
+        dataDirectory = Paths.get(directory);
+        loaded = false;
+    }
+
+    // Seals blocks more than depth behind the tip into segments of blocksPerSegment on save; depth < 0 disables it
+    public static synchronized void setColdStorage(int depth, int blocksPerSegment) {
+        coldDepth = depth;
+        segmentBlocks = Math.max(1, blocksPerSegment);
+    }
+
+    // Resolves a data file name against the data directory
+    public static Path dataFile(String name) {
+        return dataDirectory.resolve(name);
+    }
+
+    // Clears the chain and the block tree
+    public static synchronized void reset() {
+        blockChain.clear();
+        indexCanonicalChain();
+    }
+
+    // Load blockchain from file. The sealed segments' headers are read and the file is parsed as a stream
+    // without holding the chain lock; only swapping in the chain and rebuilding the indexes is done under the lock.
+    // Missing files mean a new node; files that exist but can't be read throw, so a damaged chain is never
+    // mistaken for an empty one.
+    public static void loadBlockchain() throws IOException {
+        List<BlockSegment> segments = BlockSegment.openAll(dataFile(SEGMENT_DIR));
+        File file = dataFile(BLOCKCHAIN_FILE).toFile();
+        if (!file.exists() && segments.isEmpty()) {
+            System.out.println("Blockchain file not found. Starting with empty blockchain.");
+            synchronized (ChainHub.class) {
+                loaded = true;
+            }
+            return;
+        }
+
+        Type listType = new TypeToken<ArrayList<Block>>(){}.getType();
+        ArrayList<Block> blocks = new ArrayList<>();
+        if (file.exists()) {
+            try (Reader reader = Files.newBufferedReader(dataFile(BLOCKCHAIN_FILE))) {
+                blocks = gson.fromJson(reader, listType);
+            } catch (JsonParseException e) {
+                throw new IOException(BLOCKCHAIN_FILE + " is not a valid list of blocks", e);
+            }
+            if (blocks == null) {
+                throw new IOException(BLOCKCHAIN_FILE + " is empty");
             }
-        } catch (Exception e) {
-            System.err.println("Error loading blockchain: " + e.getMessage());
-            System.out.println("Starting with empty blockchain.");
         }
+
+        synchronized (ChainHub.class) {
+            blockChain.restore(segments, blocks);
+            indexCanonicalChain();
+            loaded = true;
+        }
+        System.out.println("Blockchain loaded successfully. Blocks: " + blockChain.size()
+                + " (" + blockChain.sealedSize() + " sealed)");
     }
 
-    // Save blockchain to file
-    public static void saveBlockchain() {
+    // Reads the tip header written by the last save, or null if there is none
+    public static BlockHeader loadSavedTip() {
         try {
-            String json = gson.toJson(blockChain);
-            Files.write(Paths.get(BLOCKCHAIN_FILE), json.getBytes());
-            System.out.println("Blockchain saved successfully. Blocks: " + blockChain.size());
+            if (!dataFile(TIP_FILE).toFile().exists()) {
+                return null;
+            }
+            return gson.fromJson(new String(Files.readAllBytes(dataFile(TIP_FILE))), BlockHeader.class);
         } catch (Exception e) {
-            System.err.println("Error saving blockchain: " + e.getMessage());
+            System.err.println("Error reading saved tip: " + e.getMessage());
+            return null;
         }
     }
 
+    // Save blockchain to file. Blocks past the cold depth are sealed into new segment files first,
+    // so blockchain.json only holds the hot blocks; segments a reorg unsealed are deleted last.
+    // The chain lock is only held to copy what gets written and to swap in the new segments, so mining
+    // and reads carry on while files are written; saveLock keeps saves from overlapping.
+    // Refuses to save until the data directory has been loaded.
+    public static void saveBlockchain() throws IOException {
+        synchronized (saveLock) {
+            Path directory;
+            int firstSealed;
+            List<List<Block>> runs;
+            List<Block> hot;
+            BlockHeader tipHeader;
+            Set<Path> unsealed;
+            synchronized (ChainHub.class) {
+                if (!loaded) {
+                    throw new IOException("The chain in " + dataDirectory.toAbsolutePath() + " was not loaded; not saving over it");
+                }
+                directory = dataDirectory;
+                firstSealed = blockChain.sealedSize();
+                runs = coldDepth >= 0 ? blockChain.sealableRuns(coldDepth, segmentBlocks) : List.of();
+                hot = new ArrayList<>(blockChain.getHotBlocks());
+                tipHeader = headerChain.isEmpty() ? null : headerChain.get(headerChain.size() - 1);
+                unsealed = blockChain.getUnsealedFiles();
+            }
+
+            Path segmentDir = directory.resolve(SEGMENT_DIR);
+            List<BlockSegment> written = BlockStore.writeSegments(segmentDir, firstSealed, runs, unsealed);
+            int sealed;
+            Set<Path> needed;
+            synchronized (ChainHub.class) {
+                // A reorg while the segments were written leaves the ones it touched uninstalled
+                sealed = blockChain.install(written);
+                for (int height = firstSealed; height < firstSealed + sealed; height++) {
+                    blockTree.get(headerChain.get(height).getHash()).releaseBlock();
+                }
+                blockChain.forgetUnsealedFiles(unsealed);
+                needed = blockChain.getNeededFiles();
+            }
+            if (sealed > 0) {
+                System.out.println("Sealed blocks up to height " + (firstSealed + sealed - 1));
+            }
+
+            String json = gson.toJson(hot.subList(sealed, hot.size()));
+            Files.write(directory.resolve(BLOCKCHAIN_FILE), json.getBytes());
+            if (tipHeader != null) {
+                Files.write(directory.resolve(TIP_FILE), gson.toJson(tipHeader).getBytes());
+            }
+            // Unsealed segments and uninstalled new ones are now covered by blockchain.json
+            Set<Path> deletable = new HashSet<>(unsealed);
+            for (BlockSegment segment : written) {
+                deletable.add(segment.getFile().getFileName());
+            }
+            BlockStore.removeStaleSegments(segmentDir, needed, deletable);
+            System.out.println("Blockchain saved successfully. Blocks: " + (firstSealed + hot.size()));
+        }
+    }
+
+    // Checks linkage and proof of work using only the header chain.
+    // Blocks without a Merkle root can't be rehashed from their header, so only their PoW prefix is checked,
+    // and they are only allowed below the legacy height.
+    public static synchronized boolean isHeaderChainValid() {
+        String hashTarget = new String(new char[difficulty]).replace('\0', '0');
+        String expectedPrevious = GENESIS_PREVIOUS_HASH;
+
+        for (BlockHeader header : headerChain) {
+            if (!expectedPrevious.equals(header.getPreviousHash())) {
+                System.out.println("Previous Hashes not equal at height " + header.getHeight());
+                return false;
+            }
+            if (header.getMerkleRoot() == null && header.getHeight() >= legacyHeight) {
+                System.out.println("Block at height " + header.getHeight() + " has no Merkle root");
+                return false;
+            }
+            if (header.getMerkleRoot() != null && !header.getHash().equals(header.calculateHash())) {
+                System.out.println("Header hash not equal at height " + header.getHeight());
+                return false;
+            }
+            if (!header.getHash().startsWith(hashTarget)) {
+                System.out.println("Block at height " + header.getHeight() + " hasn't been mined");
+                return false;
+            }
+            expectedPrevious = header.getHash();
+        }
+        return true;
+    }
+
     public static Boolean isChainValid(){
+        try {
+            return isSnapshotValid();
+        } catch (UncheckedIOException e) {
+            // A reorg deeper than the hot tier unsealed a segment and a save replaced its file while it was
+            // being read; a fresh snapshot no longer refers to it
+            System.out.println("Chain changed while validating, retrying: " + e.getMessage());
+            return isSnapshotValid();
+        }
+    }
+
+    // Validates a snapshot, so blocks appended meanwhile don't disturb the walk or the parallel signature checks
+    private static boolean isSnapshotValid() {
+        List<Block> chain;
+        int legacy;
+        synchronized (ChainHub.class) {
+            chain = blockChain.snapshot();
+            legacy = legacyHeight;
+        }
+        return isChainValid(chain, legacy);
+    }
+
+    // isChainValid() as of the current tip, rerun only when the tip changes; for callers that ask often, like stats
+    public static boolean isChainValidForTip() {
+        synchronized (validationLock) {
+            String tipHash;
+            List<Block> chain;
+            int legacy;
+            synchronized (ChainHub.class) {
+                tipHash = getTipHash();
+                if (tipHash.equals(validatedTip)) {
+                    return validatedResult;
+                }
+                chain = blockChain.snapshot();
+                legacy = legacyHeight;
+            }
+            try {
+                validatedResult = isChainValid(chain, legacy);
+            } catch (UncheckedIOException e) {
+                // As in isChainValid(); the tip has moved on, so the result isn't kept for it
+                return isChainValid();
+            }
+            validatedTip = tipHash;
+            return validatedResult;
+        }
+    }
+
+    private static boolean isChainValid(List<Block> snapshot, int legacy) {
         Block currentBlock;
         Block previousBlock;
         String hashTarget = new String(new char[difficulty]).replace('\0', '0');
+        // Inflated once here, outside the chain lock, since the walk and the signature checks both read every block
+        List<Block> chain = new ArrayList<>(snapshot);
 
-        for(int i=1; i < blockChain.size(); i ++){
-            currentBlock = blockChain.get(i);
-            previousBlock = blockChain.get(i-1);
+        for(int i=1; i < chain.size(); i ++){
+            currentBlock = chain.get(i);
+            previousBlock = chain.get(i-1);
 
             //compare registered hash and calculated hash:
             if(!currentBlock.hash.equals(currentBlock.calculateHash())){
@@ -72,6 +595,16 @@ public class ChainHub {
                 return false;
             }
 
+            //compare stored Merkle root and the root of the block's transactions; only legacy blocks may lack one
+            if(currentBlock.getMerkleRoot() == null && i >= legacy) {
+                System.out.println("Block has no Merkle root");
+                return false;
+            }
+            if(!currentBlock.hasValidMerkleRoot()) {
+                System.out.println("Merkle root does not match transactions");
+                return false;
+            }
+
             //compare previous hash and registered previous hash
             if(!previousBlock.hash.equals(currentBlock.previousHash) ) {
                 System.out.println("Previous Hashes not equal");
@@ -84,6 +617,8 @@ public class ChainHub {
                 return false;
             }
         }
-        return true;
+
+        //check trade signatures, in parallel across cores
+        return SignatureVerifier.verifyChain(chain);
     }
 }
@@ -0,0 +1,20 @@
+package com.example.blockchain;
+
+/**
+ * Receives canonical chain changes from ChainHub.
+ * During a reorg, blocks are disconnected tip-first and the new branch is then connected oldest-first.
+ */
+public interface ChainListener {
+
+    // Called before a block is connected, while the canonical chain ends at the block's parent.
+    // Returning false rejects the block as invalid.
+    default boolean canConnect(Block block) {
+        return true;
+    }
+
+    // Called after a block becomes part of the canonical chain
+    void onBlockConnected(Block block);
+
+    // Called after a block is removed from the canonical chain by a reorg
+    void onBlockDisconnected(Block block);
+}
@@ -0,0 +1,122 @@
+package com.example.blockchain;
+
+import com.google.gson.Gson;
+
+import java.util.List;
+
+/**
+ * Proof that a transaction is on the chain: the transaction, its Merkle branch inside its block,
+ * and the block headers from a trusted checkpoint up to the current tip.
+ * A client that trusts the checkpoint can check the proof with verify() without downloading blocks.
+ * Every header after the checkpoint needs a Merkle root, so the checkpoint can't be older than the
+ * last block mined before Merkle roots.
+ */
+public class MerkleProof {
+
+    private static final Gson gson = new Gson();
+
+    // One sibling hash on the path from a leaf to the Merkle root
+    public static class Step {
+        private String hash;
+        private boolean left; // true if the sibling is the left operand
+
+        // Default constructor for JSON deserialization
+        public Step() {
+        }
+
+        public Step(String hash, boolean left) {
+            this.hash = hash;
+            this.left = left;
+        }
+
+        public String getHash() { return hash; }
+        public boolean isLeft() { return left; }
+        public void setHash(String hash) { this.hash = hash; }
+        public void setLeft(boolean left) { this.left = left; }
+    }
+
+    private String transactionData;   // Exact transaction string that was hashed into the tree
+    private Transaction transaction;  // Parsed form of transactionData; required, and verify() checks it matches
+    private String blockHash;
+    private String merkleRoot;
+    private List<Step> branch;
+    private String checkpoint;        // Hash the header chain starts after ("0" for genesis)
+    private List<BlockHeader> headers;
+
+    // Default constructor for JSON deserialization
+    public MerkleProof() {
+    }
+
+    public MerkleProof(String transactionData, Transaction transaction, String blockHash, String merkleRoot,
+                       List<Step> branch, String checkpoint, List<BlockHeader> headers) {
+        this.transactionData = transactionData;
+        this.transaction = transaction;
+        this.blockHash = blockHash;
+        this.merkleRoot = merkleRoot;
+        this.branch = branch;
+        this.checkpoint = checkpoint;
+        this.headers = headers;
+    }
+
+    // Checks the proof against a checkpoint hash the caller already trusts
+    public static boolean verify(MerkleProof proof, String checkpointHash, int difficulty) {
+        String hashTarget = new String(new char[difficulty]).replace('\0', '0');
+
+        // The transaction hashes up to the claimed Merkle root
+        if (!MerkleTree.rootFromBranch(proof.getTransactionData(), proof.getBranch()).equals(proof.getMerkleRoot())) {
+            return false;
+        }
+
+        // The headers link back to the checkpoint, are mined, and include the block with that root
+        String expectedPrevious = checkpointHash;
+        boolean blockFound = false;
+        for (BlockHeader header : proof.getHeaders()) {
+            if (header.getMerkleRoot() == null
+                    || !expectedPrevious.equals(header.getPreviousHash())
+                    || !header.getHash().equals(header.calculateHash())
+                    || !header.getHash().startsWith(hashTarget)) {
+                return false;
+            }
+            if (header.getHash().equals(proof.getBlockHash())) {
+                if (!header.getMerkleRoot().equals(proof.getMerkleRoot()) || !matchesTransactionData(proof, header)) {
+                    return false;
+                }
+                blockFound = true;
+            }
+            expectedPrevious = header.getHash();
+        }
+        return blockFound;
+    }
+
+    // The parsed transaction must be present and exactly what transactionData says in the proven block, since
+    // that's what a client reads the pet's owner from
+    private static boolean matchesTransactionData(MerkleProof proof, BlockHeader header) {
+        if (proof.getTransaction() == null) {
+            return false;
+        }
+        Block block = new Block();
+        block.setHash(header.getHash());
+        block.setTimeStamp(header.getTimeStamp());
+        block.setData(proof.getTransactionData());
+        Transaction parsed = PetService.parseTransactionFromBlock(block);
+        return parsed != null && gson.toJson(parsed).equals(gson.toJson(proof.getTransaction()));
+    }
+
+    // Getters
+    public String getTransactionData() { return transactionData; }
+    public Transaction getTransaction() { return transaction; }
+    public String getBlockHash() { return blockHash; }
+    public String getMerkleRoot() { return merkleRoot; }
+    public List<Step> getBranch() { return branch; }
+    public String getCheckpoint() { return checkpoint; }
+    public List<BlockHeader> getHeaders() { return headers; }
+
+    // Setters (for JSON deserialization)
+    public void setTransactionData(String transactionData) { this.transactionData = transactionData; }
+    public void setTransaction(Transaction transaction) { this.transaction = transaction; }
+    public void setBlockHash(String blockHash) { this.blockHash = blockHash; }
+    public void setMerkleRoot(String merkleRoot) { this.merkleRoot = merkleRoot; }
+    public void setBranch(List<Step> branch) { this.branch = branch; }
+    public void setCheckpoint(String checkpoint) { this.checkpoint = checkpoint; }
+    public void setHeaders(List<BlockHeader> headers) { this.headers = headers; }
+}
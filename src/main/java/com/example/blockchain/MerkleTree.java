@@ -0,0 +1,76 @@
+package com.example.blockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merkle tree over a block's transactions.
+ * Leaves and inner nodes are hashed with different prefixes (as in RFC 6962), so an inner node can't be passed
+ * off as a transaction, and an odd node at any level moves up unpaired, so no two transaction lists share a root.
+ */
+public class MerkleTree {
+
+    private static final String LEAF_PREFIX = "\u0000";
+    private static final String NODE_PREFIX = "\u0001";
+
+    // Computes the Merkle root of a list of transactions
+    public static String computeRoot(List<String> transactions) {
+        List<String> level = leafHashes(transactions);
+        if (level.isEmpty()) {
+            return StringUtil.applySha256("");
+        }
+        while (level.size() > 1) {
+            level = nextLevel(level);
+        }
+        return level.get(0);
+    }
+
+    // Returns the sibling hashes from the leaf at index up to the root
+    public static List<MerkleProof.Step> buildBranch(List<String> transactions, int index) {
+        List<MerkleProof.Step> branch = new ArrayList<>();
+        List<String> level = leafHashes(transactions);
+        while (level.size() > 1) {
+            boolean isRight = index % 2 == 1;
+            // The last node of an odd level has no sibling and moves up as it is
+            if (isRight || index + 1 < level.size()) {
+                branch.add(new MerkleProof.Step(level.get(isRight ? index - 1 : index + 1), isRight));
+            }
+            level = nextLevel(level);
+            index /= 2;
+        }
+        return branch;
+    }
+
+    // Folds a branch onto a transaction and returns the root it leads to
+    public static String rootFromBranch(String transaction, List<MerkleProof.Step> branch) {
+        String hash = leafHash(transaction);
+        for (MerkleProof.Step step : branch) {
+            hash = step.isLeft() ? nodeHash(step.getHash(), hash) : nodeHash(hash, step.getHash());
+        }
+        return hash;
+    }
+
+    private static List<String> leafHashes(List<String> transactions) {
+        List<String> hashes = new ArrayList<>();
+        for (String transaction : transactions) {
+            hashes.add(leafHash(transaction));
+        }
+        return hashes;
+    }
+
+    private static String leafHash(String transaction) {
+        return StringUtil.applySha256(LEAF_PREFIX + transaction);
+    }
+
+    private static String nodeHash(String left, String right) {
+        return StringUtil.applySha256(NODE_PREFIX + left + right);
+    }
+
+    private static List<String> nextLevel(List<String> level) {
+        List<String> next = new ArrayList<>();
+        for (int i = 0; i < level.size(); i += 2) {
+            next.add(i + 1 < level.size() ? nodeHash(level.get(i), level.get(i + 1)) : level.get(i));
+        }
+        return next;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.blockchain;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Platform threads that run write requests. A single miner thread mines and appends blocks one at a time:
+ * every block builds on the current tip, so two blocks mined at once would race for the same parent and
+ * all but one would be wasted. Saving to disk runs on a small I/O pool so the miner can start the next block.
+ * Request threads (virtual threads on Java 21+) hand the work over and wait for it. Waiting unmounts a
+ * virtual thread, but CPU-bound hashing or file writes inside synchronized ChainHub methods would pin its carrier.
+ * AdmissionControl bounds how many tasks can be waiting here.
+ */
+@Component
+public class MiningExecutor {
+
+    private final ThreadPoolExecutor miner;
+    private final ThreadPoolExecutor io;
+
+    public MiningExecutor(@Value("${blockchain.io.threads:2}") int ioThreads) {
+        this.miner = platformPool("miner", 1);
+        this.io = platformPool("io", Math.max(1, ioThreads));
+        System.out.println("Mining on 1 platform thread, saving on " + io.getMaximumPoolSize());
+    }
+
+    private static ThreadPoolExecutor platformPool(String name, int size) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Runs the task on the miner thread and waits for it, rethrowing its exception unchanged
+    public <T> T mine(Callable<T> task) throws Exception {
+        return await(miner.submit(task));
+    }
+
+    // Runs the task on the I/O pool and waits for it, rethrowing its exception unchanged
+    public <T> T io(Callable<T> task) throws Exception {
+        return await(io.submit(task));
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("miningActive", miner.getActiveCount());
+        stats.put("miningQueued", miner.getQueue().size());
+        stats.put("ioThreads", io.getMaximumPoolSize());
+        stats.put("ioQueued", io.getQueue().size());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService pool : new ExecutorService[] {miner, io}) {
+            pool.shutdown();
+        }
+    }
+}
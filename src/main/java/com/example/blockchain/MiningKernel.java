@@ -0,0 +1,78 @@
+package com.example.blockchain;
+
+/**
+ * Chooses how blocks are mined.
+ * When the jdk.incubator.vector module is present (run with --add-modules jdk.incubator.vector) and
+ * passes a self-test against StringUtil.applySha256, nonces are searched several at a time with
+ * VectorSha256. Otherwise Block.mineBlock uses its scalar loop.
+ * Set -Dblockchain.vector-mining=false to force the scalar path.
+ */
+public class MiningKernel {
+
+    private static final boolean VECTOR_AVAILABLE = detectVectorSupport();
+
+    public static boolean isVectorAvailable() {
+        return VECTOR_AVAILABLE;
+    }
+
+    /**
+     * Returns the lowest nonce at or after startNonce for which SHA-256(prefix + nonce + suffix)
+     * starts with difficulty zeros. This is the same nonce the scalar loop would find.
+     */
+    public static int findNonce(String prefix, int startNonce, String suffix, int difficulty) {
+        long nonce = startNonce;
+        while (nonce <= Integer.MAX_VALUE) {
+            VectorSha256.MessageTemplate template =
+                    new VectorSha256.MessageTemplate(prefix, digits((int) nonce), suffix);
+            while (nonce <= template.maxNonce()) {
+                int found = VectorSha256.searchBatch(template, (int) nonce, difficulty);
+                if (found >= 0) {
+                    return found;
+                }
+                nonce += VectorSha256.lanes();
+            }
+            nonce = template.maxNonce() + 1L;
+        }
+        throw new IllegalStateException("No nonce found for difficulty " + difficulty);
+    }
+
+    private static int digits(int nonce) {
+        return Integer.toString(nonce).length();
+    }
+
+    private static boolean detectVectorSupport() {
+        if (!Boolean.parseBoolean(System.getProperty("blockchain.vector-mining", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            System.out.println("Mining kernel: scalar");
+            return false;
+        }
+
+        try {
+            // Short and multi-block messages, and a batch that crosses a change in nonce length
+            String[][] samples = {
+                    {"0" + 1700000000000L, "ab"},
+                    {StringUtil.applySha256("previous") + 1700000000000L, StringUtil.applySha256("root")}
+            };
+            for (String[] sample : samples) {
+                for (int start : new int[] {0, 95, 123456}) {
+                    VectorSha256.MessageTemplate template =
+                            new VectorSha256.MessageTemplate(sample[0], digits(start), sample[1]);
+                    int count = (int) Math.min(VectorSha256.lanes(), (long) template.maxNonce() - start + 1);
+                    String[] digests = VectorSha256.digests(template, start, count);
+                    for (int lane = 0; lane < count; lane++) {
+                        String expected = StringUtil.applySha256(sample[0] + (start + lane) + sample[1]);
+                        if (!expected.equals(digests[lane])) {
+                            System.err.println("Vector SHA-256 self-test failed, using scalar mining");
+                            return false;
+                        }
+                    }
+                }
+            }
+            System.out.println("Mining kernel: vector, " + VectorSha256.lanes() + " lanes");
+            return true;
+        } catch (Throwable e) {
+            System.err.println("Vector mining unavailable (" + e + "), using scalar mining");
+            return false;
+        }
+    }
+}
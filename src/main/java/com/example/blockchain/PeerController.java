@@ -0,0 +1,126 @@
+package com.example.blockchain;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Node-to-node endpoints used by PeerService to propagate and sync blocks
+@RestController
+@RequestMapping("/api/p2p")
+public class PeerController {
+
+    private final PeerService peerService;
+
+    public PeerController(PeerService peerService) {
+        this.peerService = peerService;
+    }
+
+    // Returns this node's tip so a peer can decide whether it needs to sync
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("tipHash", ChainHub.getTipHash());
+        response.put("height", ChainHub.getHeight());
+        response.put("cumulativeWork", ChainHub.getTipWork());
+        response.put("nodeUrl", peerService.getNodeUrl());
+        response.put("role", peerService.isReplica() ? "replica" : "primary");
+        return ResponseEntity.ok(response);
+    }
+
+    // Returns canonical headers starting at a height, for headers-first sync
+    @GetMapping("/headers")
+    public ResponseEntity<List<BlockHeader>> getHeaders(@RequestParam(defaultValue = "0") int from,
+                                                        @RequestParam(defaultValue = "500") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, PeerService.HEADER_BATCH));
+        return ResponseEntity.ok(ChainHub.getHeadersFrom(from, pageSize));
+    }
+
+    // Returns canonical headers after the fork point of the caller's block locator (see ChainHub.getLocator()),
+    // so headers-first sync only downloads the part of the chain the caller doesn't share
+    @PostMapping("/headers")
+    public ResponseEntity<?> getHeadersAfter(@RequestBody List<String> locator,
+                                             @RequestParam(defaultValue = "500") int limit) {
+        if (locator.size() > PeerService.MAX_LOCATOR) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "At most " + PeerService.MAX_LOCATOR + " locator hashes");
+            return ResponseEntity.badRequest().body(error);
+        }
+        int pageSize = Math.max(1, Math.min(limit, PeerService.HEADER_BATCH));
+        return ResponseEntity.ok(ChainHub.getHeadersAfter(locator, pageSize));
+    }
+
+    // Returns canonical blocks starting at a height, for catching up from a known height
+    @GetMapping("/blocks/from/{height}")
+    public ResponseEntity<List<Block>> getBlocksFrom(@PathVariable int height,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, PeerService.BLOCK_BATCH));
+        return ResponseEntity.ok(ChainHub.getBlocksFrom(height, pageSize));
+    }
+
+    // Returns the requested blocks by hash, skipping any this node doesn't have
+    @PostMapping("/blocks")
+    public ResponseEntity<?> getBlocks(@RequestBody List<String> hashes) {
+        if (hashes.size() > PeerService.BLOCK_BATCH) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "At most " + PeerService.BLOCK_BATCH + " blocks per request");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        for (String hash : hashes) {
+            Block block = ChainHub.getBlock(hash);
+            if (block != null) {
+                blocks.add(block);
+            }
+        }
+        return ResponseEntity.ok(blocks);
+    }
+
+    // A peer announces a new tip by hash; we fetch it in the background if it's new to us
+    @PostMapping("/announce")
+    public ResponseEntity<Map<String, String>> announce(@RequestBody Map<String, String> request) {
+        String hash = request.get("hash");
+        if (hash == null || hash.trim().isEmpty()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "hash is required");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        peerService.onAnnouncement(hash, request.get("from"));
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "ok");
+        return ResponseEntity.ok(response);
+    }
+
+    // Registers the calling node as a peer
+    @PostMapping("/peers")
+    public ResponseEntity<Map<String, String>> addPeer(@RequestBody Map<String, String> request) {
+        String url = request.get("url");
+        if (url == null || url.trim().isEmpty()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "url is required");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        String peer = peerService.addPeer(url);
+        if (peer == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "url must be the http(s) URL of another node, e.g. http://localhost:8081");
+            return ResponseEntity.badRequest().body(error);
+        }
+        peerService.requestSync(peer);
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "ok");
+        return ResponseEntity.ok(response);
+    }
+
+    // Lists the peers this node talks to
+    @GetMapping("/peers")
+    public ResponseEntity<List<String>> getPeers() {
+        return ResponseEntity.ok(new ArrayList<>(peerService.getPeers()));
+    }
+}
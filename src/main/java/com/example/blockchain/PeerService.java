@@ -0,0 +1,383 @@
+package com.example.blockchain;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps this node's chain in sync with its peers over HTTP.
+ * New tips are announced by hash; a peer that does not know the hash pulls the missing blocks.
+ * Catching up first tries to fetch blocks straight from our height, and falls back to a
+ * headers-first sync when the peer's chain has forked from ours.
+ * Peers learned at runtime (registrations and announcements) are dropped after repeated failed contacts;
+ * configured peers are kept.
+ */
+@Component
+public class PeerService implements ChainListener {
+
+    // Page sizes for the sync protocol, also the maximum the endpoints will serve
+    public static final int HEADER_BATCH = 500;
+    public static final int BLOCK_BATCH = 100;
+    // Longest block locator a peer may send; a locator for a 2^31-block chain is about 40 hashes
+    public static final int MAX_LOCATOR = 64;
+
+    // Consecutive failed contacts after which a peer learned at runtime is dropped
+    static final int MAX_PEER_FAILURES = 5;
+
+    private final Set<String> peers = ConcurrentHashMap.newKeySet();
+
+    // Peers from blockchain.peers and blockchain.replica-of, which are never dropped
+    private final Set<String> configuredPeers = new HashSet<>();
+
+    private final Map<String, Integer> peerFailures = new ConcurrentHashMap<>();
+
+    // Peers with a sync queued but not yet started; repeated requests for a peer share that one sync
+    private final Set<String> pendingSyncs = ConcurrentHashMap.newKeySet();
+
+    // Latest connected block not yet announced; announcements are coalesced to the newest tip
+    private final AtomicReference<Block> pendingAnnouncement = new AtomicReference<>();
+
+    // Single thread so syncs and announcements never race each other
+    private final ExecutorService network = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "p2p");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RestTemplate restTemplate;
+    private final PersistenceService persistenceService;
+
+    // URL other nodes use to reach this one, e.g. http://localhost:8081
+    private final String nodeUrl;
+
+    // Primary node URL when running as a read-only replica, empty on a primary
+    private final String replicaOf;
+
+    public PeerService(PersistenceService persistenceService, RestTemplateBuilder restTemplateBuilder,
+                       @Value("${blockchain.node-url:}") String nodeUrl,
+                       @Value("${blockchain.peers:}") String initialPeers,
+                       @Value("${blockchain.replica-of:}") String replicaOf) {
+        this.persistenceService = persistenceService;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(10))
+                .build();
+        this.nodeUrl = nodeUrl.trim();
+        this.replicaOf = replicaOf.trim();
+
+        // initialPeers is a comma-separated list of peer URLs to connect to on startup
+        for (String url : initialPeers.split(",")) {
+            if (url.trim().isEmpty()) {
+                continue;
+            }
+            String peer = addPeer(url);
+            if (peer == null) {
+                System.err.println("Ignoring invalid peer URL " + url.trim());
+            } else {
+                configuredPeers.add(peer);
+            }
+        }
+        if (isReplica()) {
+            String primary = addPeer(replicaOf);
+            if (primary == null) {
+                throw new IllegalStateException("Invalid blockchain.replica-of URL " + replicaOf);
+            }
+            configuredPeers.add(primary);
+            System.out.println("Running as read-only replica of " + replicaOf);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        ChainHub.addListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        network.shutdownNow();
+    }
+
+    // Introduce ourselves to the configured peers and catch up once our own chain has loaded
+    @EventListener(ApplicationReadyEvent.class)
+    public void connectToPeers() {
+        for (String peer : peers) {
+            network.submit(() -> {
+                try {
+                    persistenceService.awaitLoaded();
+                    if (!nodeUrl.isEmpty()) {
+                        restTemplate.postForObject(peer + "/api/p2p/peers", Map.of("url", nodeUrl), Map.class);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Could not register with peer " + peer + ": " + e.getMessage());
+                    recordFailure(peer);
+                }
+                syncWith(peer);
+            });
+        }
+    }
+
+    // Periodic sync in case an announcement was missed
+    @Scheduled(fixedDelayString = "${blockchain.sync-interval-ms:30000}")
+    public void syncAll() {
+        for (String peer : peers) {
+            requestSync(peer);
+        }
+    }
+
+    // Replicas poll the primary often; announcements from the primary make this mostly a fallback
+    @Scheduled(fixedDelayString = "${blockchain.replica-poll-ms:1000}")
+    public void followPrimary() {
+        if (isReplica()) {
+            requestSync(normalizeUrl(replicaOf));
+        }
+    }
+
+    public boolean isReplica() {
+        return !replicaOf.isEmpty();
+    }
+
+    // Adds a peer by URL. Returns the URL as stored, or null if it isn't an http(s) URL of another node.
+    public String addPeer(String url) {
+        String peer = normalizeUrl(url);
+        if (peer == null || peer.equals(normalizeUrl(nodeUrl))) {
+            return null;
+        }
+        if (peers.add(peer)) {
+            System.out.println("Added peer " + peer);
+        }
+        return peer;
+    }
+
+    // The URL without trailing slashes if it is an absolute http(s) URL with a host and no query,
+    // fragment or credentials; otherwise null
+    static String normalizeUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url.trim());
+            String scheme = uri.getScheme();
+            if (!("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) || uri.getHost() == null
+                    || uri.getRawUserInfo() != null || uri.getRawQuery() != null || uri.getRawFragment() != null) {
+                return null;
+            }
+            String peer = uri.toString();
+            while (peer.endsWith("/")) {
+                peer = peer.substring(0, peer.length() - 1);
+            }
+            return peer;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private void recordSuccess(String peer) {
+        peerFailures.remove(peer);
+    }
+
+    // Counts a failed contact; a peer learned at runtime that keeps failing is dropped
+    private void recordFailure(String peer) {
+        if (configuredPeers.contains(peer) || !peers.contains(peer)) {
+            return;
+        }
+        int failures = peerFailures.merge(peer, 1, Integer::sum);
+        if (failures >= MAX_PEER_FAILURES && peers.remove(peer)) {
+            peerFailures.remove(peer);
+            System.out.println("Dropped peer " + peer + " after " + failures + " failed attempts");
+        }
+    }
+
+    public Set<String> getPeers() {
+        return Collections.unmodifiableSet(peers);
+    }
+
+    public String getNodeUrl() {
+        return nodeUrl;
+    }
+
+    // Handles a peer telling us about its tip; fetches the blocks if we don't have it
+    public void onAnnouncement(String hash, String fromUrl) {
+        if (ChainHub.getNode(hash) != null) {
+            return;
+        }
+        String peer = addPeer(fromUrl);
+        if (peer != null) {
+            requestSync(peer);
+        }
+    }
+
+    // Queues a sync with the peer on the network thread, unless one is already waiting there.
+    // A slow or unreachable peer therefore can't pile up syncs while each one waits out its timeouts.
+    public void requestSync(String peer) {
+        if (pendingSyncs.add(peer)) {
+            network.submit(() -> {
+                // Cleared before syncing, so a request arriving mid-sync still gets a later pass
+                pendingSyncs.remove(peer);
+                syncWith(peer);
+            });
+        }
+    }
+
+    @Override
+    public void onBlockConnected(Block block) {
+        // Called under the chain lock, so only queue the work here
+        if (pendingAnnouncement.getAndSet(block) == null) {
+            network.submit(this::announceTip);
+        }
+    }
+
+    @Override
+    public void onBlockDisconnected(Block block) {
+        // Nothing to announce; the new branch's blocks are announced as they connect
+    }
+
+    private void announceTip() {
+        Block block = pendingAnnouncement.getAndSet(null);
+        // Replicas only follow; every block they have came from a peer that already knows it
+        if (block == null || nodeUrl.isEmpty() || isReplica()) {
+            return;
+        }
+        Map<String, String> announcement = Map.of("hash", block.hash, "from", nodeUrl);
+        for (String peer : peers) {
+            try {
+                restTemplate.postForObject(peer + "/api/p2p/announce", announcement, Map.class);
+                recordSuccess(peer);
+            } catch (Exception e) {
+                System.err.println("Could not announce block to " + peer + ": " + e.getMessage());
+                recordFailure(peer);
+            }
+        }
+    }
+
+    // Pulls any blocks the peer has that give it a heavier chain than ours
+    public void syncWith(String peer) {
+        // Until our chain is loaded, any peer would look heavier and loading would overwrite what we fetched
+        if (!persistenceService.isReady()) {
+            return;
+        }
+        try {
+            Map<?, ?> status = restTemplate.getForObject(peer + "/api/p2p/status", Map.class);
+            if (status == null) {
+                return;
+            }
+            recordSuccess(peer);
+            String peerTip = (String) status.get("tipHash");
+            long peerWork = ((Number) status.get("cumulativeWork")).longValue();
+            if (ChainHub.getNode(peerTip) != null || peerWork <= ChainHub.getTipWork()) {
+                return;
+            }
+
+            int before = ChainHub.getHeight();
+            if (!catchUpFromHeight(peer)) {
+                headersFirstSync(peer);
+            }
+
+            System.out.println("Synced with " + peer + ": height " + before + " -> " + ChainHub.getHeight());
+            ChainHub.saveBlockchain();
+            PetService.savePetRegistry();
+        } catch (Exception e) {
+            System.err.println("Error syncing with peer " + peer + ": " + e.getMessage());
+            recordFailure(peer);
+        }
+    }
+
+    // Fast path: fetch canonical blocks after our tip height. Returns false if the peer's chain doesn't build on our tip.
+    private boolean catchUpFromHeight(String peer) {
+        while (true) {
+            Block[] blocks = restTemplate.getForObject(peer + "/api/p2p/blocks/from/{height}?limit={limit}",
+                    Block[].class, ChainHub.getHeight() + 1, BLOCK_BATCH);
+            if (blocks == null || blocks.length == 0) {
+                return true;
+            }
+            if (!blocks[0].previousHash.equals(ChainHub.getTipHash())) {
+                return false;
+            }
+            List<ChainHub.AddResult> results = ChainHub.addBlocks(Arrays.asList(blocks));
+            if (results.size() < blocks.length || isRejected(results.get(results.size() - 1))) {
+                return false;
+            }
+            if (blocks.length < BLOCK_BATCH) {
+                return true;
+            }
+        }
+    }
+
+    // Slow path: find where the peer's chain forks from ours with a block locator, download and check the
+    // peer's headers from there on, then fetch the blocks we are missing in batches
+    private void headersFirstSync(String peer) {
+        String hashTarget = new String(new char[ChainHub.difficulty]).replace('\0', '0');
+        List<String> missing = new ArrayList<>();
+
+        List<String> locator = ChainHub.getLocator();
+        BlockHeader[] headers = restTemplate.postForObject(peer + "/api/p2p/headers?limit={limit}", locator,
+                BlockHeader[].class, HEADER_BATCH);
+        if (headers == null || headers.length == 0) {
+            return;
+        }
+        // The first header must build on genesis or on a block of ours the locator named
+        String expectedPrevious = headers[0].getPreviousHash();
+        BlockNode forkPoint = locator.contains(expectedPrevious) ? ChainHub.getNode(expectedPrevious) : null;
+        if (forkPoint == null && !ChainHub.GENESIS_PREVIOUS_HASH.equals(expectedPrevious)) {
+            System.err.println("Peer " + peer + " sent headers that don't start at a block we named");
+            return;
+        }
+        int expectedHeight = forkPoint == null ? 0 : forkPoint.getHeight() + 1;
+
+        while (true) {
+            for (BlockHeader header : headers) {
+                boolean hashChecks = header.getMerkleRoot() == null || header.getHash().equals(header.calculateHash());
+                if (!expectedPrevious.equals(header.getPreviousHash()) || header.getHeight() != expectedHeight
+                        || !hashChecks || !header.getHash().startsWith(hashTarget)) {
+                    System.err.println("Peer " + peer + " sent a broken header chain at height " + header.getHeight());
+                    return;
+                }
+                expectedPrevious = header.getHash();
+                expectedHeight++;
+                if (ChainHub.getNode(header.getHash()) == null) {
+                    missing.add(header.getHash());
+                }
+            }
+            if (headers.length < HEADER_BATCH) {
+                break;
+            }
+            headers = restTemplate.getForObject(peer + "/api/p2p/headers?from={from}&limit={limit}",
+                    BlockHeader[].class, expectedHeight, HEADER_BATCH);
+            if (headers == null) {
+                break;
+            }
+        }
+
+        for (int i = 0; i < missing.size(); i += BLOCK_BATCH) {
+            List<String> batch = missing.subList(i, Math.min(missing.size(), i + BLOCK_BATCH));
+            Block[] blocks = restTemplate.postForObject(peer + "/api/p2p/blocks", batch, Block[].class);
+            if (blocks == null || blocks.length == 0) {
+                return;
+            }
+            List<ChainHub.AddResult> results = ChainHub.addBlocks(Arrays.asList(blocks));
+            ChainHub.AddResult last = results.get(results.size() - 1);
+            if (isRejected(last)) {
+                System.err.println("Rejected block " + blocks[results.size() - 1].hash + " from " + peer + ": " + last);
+                return;
+            }
+        }
+    }
+
+    private static boolean isRejected(ChainHub.AddResult result) {
+        return result == ChainHub.AddResult.INVALID || result == ChainHub.AddResult.ORPHAN;
+    }
+}
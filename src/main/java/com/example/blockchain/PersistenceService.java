@@ -2,38 +2,208 @@ package com.example.blockchain;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Service to handle persistence operations on application startup and shutdown.
- * Loads blockchain and pet registry on startup, saves them on shutdown.
+ * Startup is staged so the server can come up before the data files are parsed:
+ * opening storage and reading the saved tip happen during startup, and the chain and the pet
+ * registry are then loaded in parallel in the background. The node reports ready once both are in.
  */
 @Component
 public class PersistenceService {
 
+    public enum Stage {
+        STARTING,  // storage opened, loading not started yet
+        LOADING,   // chain and registry are being read
+        READY,
+        FAILED     // a data file exists but couldn't be read; the node serves nothing and saves nothing
+    }
+
+    // A loader that reads files and may fail
+    private interface Loader {
+        void load() throws Exception;
+    }
+
+    // Directory for this node's data files; give each node on a machine its own
+    private final String dataDir;
+
+    // Exercise the hot paths once during startup, so AppCDS training runs and CRaC checkpoints capture them
+    private final boolean warmUp;
+
+    // Blocks kept in memory and in blockchain.json behind the tip; older ones are sealed into compressed segments
+    private final int coldDepth;
+    private final int segmentBlocks;
+
+    private volatile Stage stage = Stage.STARTING;
+    private volatile BlockHeader savedTip;
+    private volatile String error;
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+    public PersistenceService(@Value("${blockchain.data-dir:.}") String dataDir,
+                              @Value("${blockchain.startup.warm-up:false}") boolean warmUp,
+                              @Value("${blockchain.storage.cold-depth:-1}") int coldDepth,
+                              @Value("${blockchain.storage.segment-blocks:1000}") int segmentBlocks) {
+        this.dataDir = dataDir;
+        this.warmUp = warmUp;
+        this.coldDepth = coldDepth;
+        this.segmentBlocks = segmentBlocks;
+    }
+
     /**
-     * Loads blockchain and pet registry from disk when application starts.
+     * Opens the data directory and reads the tip header saved with the chain.
      * This method is called automatically by Spring after dependency injection.
      */
     @PostConstruct
-    public void loadData() {
-        System.out.println("Loading persisted data...");
-        ChainHub.loadBlockchain();
-        PetService.loadPetRegistry();
-        System.out.println("Data loading complete.");
+    public void openStorage() {
+        System.out.println("Opening data directory " + Paths.get(dataDir).toAbsolutePath() + "...");
+        try {
+            Files.createDirectories(Paths.get(dataDir));
+        } catch (Exception e) {
+            System.err.println("Error creating data directory: " + e.getMessage());
+        }
+        ChainHub.setDataDirectory(dataDir);
+        ChainHub.setColdStorage(coldDepth, segmentBlocks);
+
+        savedTip = ChainHub.loadSavedTip();
+        if (savedTip != null) {
+            System.out.println("Saved tip at height " + savedTip.getHeight() + ": " + savedTip.getHash());
+        }
+        if (warmUp) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Loads the blockchain and the pet registry in parallel in the background.
+     * Starts after the context is refreshed, so an AppCDS training run or CRaC checkpoint taken at
+     * refresh holds no chain data or open files.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void loadInBackground() {
+        if (stage != Stage.STARTING) {
+            return;
+        }
+        stage = Stage.LOADING;
+        long started = System.currentTimeMillis();
+
+        ExecutorService loader = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<Void> chain = CompletableFuture.runAsync(unchecked(ChainHub::loadBlockchain), loader);
+        CompletableFuture<Void> registry = CompletableFuture.runAsync(unchecked(PetService::loadPetRegistry), loader);
+
+        // Pets saved without their latest transaction need the chain to find it
+        CompletableFuture<Void> both = CompletableFuture.allOf(chain, registry)
+                .thenRun(PetService::fillMissingLatestTransactions);
+        both.whenComplete((result, failure) -> {
+            loader.shutdown();
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                stage = Stage.FAILED;
+                System.err.println("Error loading data, refusing to serve or save until the files are fixed: " + error);
+                loaded.completeExceptionally(cause);
+                return;
+            }
+            stage = Stage.READY;
+            System.out.println("Data loading complete in " + (System.currentTimeMillis() - started)
+                    + " ms. Height: " + ChainHub.getHeight());
+            loaded.complete(null);
+        });
+    }
+
+    private static Runnable unchecked(Loader loader) {
+        return () -> {
+            try {
+                loader.load();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public boolean isReady() {
+        return stage == Stage.READY;
+    }
+
+    // Blocks until loading has finished; throws if it failed
+    public void awaitLoaded() {
+        loaded.join();
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("ready", isReady());
+        status.put("stage", stage.name());
+        status.put("error", error);
+        status.put("height", isReady() ? ChainHub.getHeight() : null);
+        status.put("savedTipHeight", savedTip == null ? null : savedTip.getHeight());
+        status.put("savedTipHash", savedTip == null ? null : savedTip.getHash());
+        return status;
+    }
+
+    // Runs mining, JSON, signature and index code once on throwaway objects; touches no chain state
+    private void warmUp() {
+        long started = System.currentTimeMillis();
+        Block block = new Block("warm-up", ChainHub.GENESIS_PREVIOUS_HASH);
+        block.mineBlock(1);
+        Gson gson = new Gson();
+        gson.fromJson(gson.toJson(List.of(block)), Block[].class);
+
+        Wallet wallet = new Wallet();
+        String message = Wallet.tradeMessage("warm-up", wallet.getAddress(), "warm-up", block.hash);
+        SignatureVerifier.verifyTrade("warm-up", wallet.getAddress(), "warm-up", block.hash,
+                wallet.getPublicKey(), wallet.sign(message));
+
+        PetRegistry registry = new PetRegistry();
+        registry.put(new Pet("0123456789abcdef", "warm-up", "Dragon", "Red", 1, wallet.getAddress(),
+                block.getTimeStamp()), block.hash);
+        registry.search(new PetIndex.Query());
+        System.out.println("Warm-up done in " + (System.currentTimeMillis() - started) + " ms");
     }
 
     /**
      * Saves blockchain and pet registry to disk when application shuts down.
      * This method is called automatically by Spring before the application context is destroyed.
+     * Nothing is saved unless loading succeeded, so a partial or empty chain can't overwrite the files.
      */
     @PreDestroy
     public void saveData() {
+        if (!isReady()) {
+            System.out.println("Data was not fully loaded; skipping save on shutdown.");
+            return;
+        }
         System.out.println("Saving data before shutdown...");
-        ChainHub.saveBlockchain();
+        try {
+            ChainHub.saveBlockchain();
+        } catch (Exception e) {
+            System.err.println("Error saving blockchain: " + e.getMessage());
+        }
         PetService.savePetRegistry();
         System.out.println("Data saving complete.");
     }
 }
-
-
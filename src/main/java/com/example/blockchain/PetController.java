@@ -1,8 +1,10 @@
 package com.example.blockchain;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,20 +14,68 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class PetController {
 
-    // A new wallet is created, Its address is generated, the address is returned as JSON
+    // Largest page served by /headers
+    private static final int MAX_HEADERS_PAGE = 500;
+
+    // Largest page served by /transactions
+    private static final int MAX_TRANSACTIONS_PAGE = 1000;
+
+    private final AdmissionControl admissionControl;
+    private final MiningExecutor miningExecutor;
+    private final PersistenceService persistenceService;
+
+    public PetController(AdmissionControl admissionControl, MiningExecutor miningExecutor,
+                         PersistenceService persistenceService) {
+        this.admissionControl = admissionControl;
+        this.miningExecutor = miningExecutor;
+        this.persistenceService = persistenceService;
+    }
+
+    // Builds the 429/503 response for a request that admission control turned away
+    private ResponseEntity<Map<String, String>> rejected(AdmissionControl.Result result) {
+        String message = result == AdmissionControl.Result.RATE_LIMITED
+                ? "Too many requests for this owner, try again later"
+                : "Server is busy mining, try again later";
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("error", message);
+        response.put("message", message);
+        HttpStatus status = result == AdmissionControl.Result.RATE_LIMITED
+                ? HttpStatus.TOO_MANY_REQUESTS
+                : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status)
+                .header("Retry-After", String.valueOf(admissionControl.retryAfterSeconds(result)))
+                .body(response);
+    }
+
+    // Returns the address for a client-generated public key, or creates a keypair here if none is sent.
+    // A server-generated private key is returned once and not kept.
     @PostMapping("/wallet/create")
-    public ResponseEntity<Map<String, String>> createWallet() {
-        Wallet wallet = new Wallet();
+    public ResponseEntity<Map<String, String>> createWallet(@RequestBody(required = false) Map<String, String> request) {
         Map<String, String> response = new HashMap<>();
+        String publicKey = request == null ? null : request.get("publicKey");
+        if (publicKey != null && !publicKey.trim().isEmpty()) {
+            response.put("address", Wallet.addressOf(publicKey.trim()));
+            response.put("publicKey", publicKey.trim());
+            return ResponseEntity.ok(response);
+        }
+
+        Wallet wallet = new Wallet();
         response.put("address", wallet.getAddress());
+        response.put("publicKey", wallet.getPublicKey());
+        response.put("privateKey", wallet.getPrivateKey());
         return ResponseEntity.ok(response);
     }
 
-    // Takes an owner address + pet name, creates a new pet for that owner, returns the created pet
+    // Takes an owner address + pet name, signed by the owner's key, creates a new pet for that owner,
+    // returns the created pet
     @PostMapping("/pet/create")
     public ResponseEntity<?> createPet(@RequestBody Map<String, String> request) {
         String ownerAddress = request.get("ownerAddress");
         String petName = request.get("petName");
+        String timestamp = request.get("timestamp");
+        String publicKey = request.get("publicKey");
+        String signature = request.get("signature");
 
         // Input validation
         if (ownerAddress == null || ownerAddress.trim().isEmpty()) {
@@ -40,13 +90,46 @@ public class PetController {
             return ResponseEntity.badRequest().body(error);
         }
 
+        if (timestamp == null || publicKey == null || signature == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "timestamp, publicKey and signature are required");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        long createdAt;
         try {
-            Pet pet = PetService.createPet(ownerAddress, petName);
+            createdAt = Long.parseLong(timestamp.trim());
+        } catch (NumberFormatException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "timestamp must be a number of milliseconds");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        AdmissionControl.Result admission = admissionControl.tryAdmit(ownerAddress);
+        if (admission != AdmissionControl.Result.ADMITTED) {
+            return rejected(admission);
+        }
+
+        try {
+            Pet pet = miningExecutor.mine(() -> PetService.createPet(ownerAddress, petName, createdAt, publicKey, signature));
+            miningExecutor.io(() -> {
+                PetService.saveChanges();
+                return null;
+            });
             return ResponseEntity.ok(pet);
+        } catch (IllegalStateException e) {
+            return rejected(AdmissionControl.Result.OVERLOADED);
+        } catch (IOException e) {
+            // The block is on the chain but couldn't be written to disk
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Saving failed: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(error);
+        } finally {
+            admissionControl.release();
         }
     }
 
@@ -64,6 +147,46 @@ public class PetController {
         return ResponseEntity.ok(pets);
     }
 
+    // Searches pets by any combination of type, color, rarity range and owner, with sorting and paging
+    @GetMapping("/pets/search")
+    public ResponseEntity<?> searchPets(@RequestParam(required = false) String type,
+                                        @RequestParam(required = false) String color,
+                                        @RequestParam(required = false) Integer minRarity,
+                                        @RequestParam(required = false) Integer maxRarity,
+                                        @RequestParam(required = false) String owner,
+                                        @RequestParam(defaultValue = "none") String sort,
+                                        @RequestParam(defaultValue = "asc") String order,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "20") int size) {
+        if (!PetIndex.SORT_FIELDS.contains(sort)) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "sort must be one of " + PetIndex.SORT_FIELDS);
+            return ResponseEntity.badRequest().body(error);
+        }
+        if (!order.equals("asc") && !order.equals("desc")) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "order must be asc or desc");
+            return ResponseEntity.badRequest().body(error);
+        }
+        if (minRarity != null && maxRarity != null && minRarity > maxRarity) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "minRarity must not be greater than maxRarity");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        PetIndex.Query query = new PetIndex.Query();
+        query.type = type;
+        query.color = color;
+        query.minRarity = minRarity;
+        query.maxRarity = maxRarity;
+        query.owner = owner;
+        query.sort = sort;
+        query.descending = order.equals("desc");
+        query.page = page;
+        query.size = size;
+        return ResponseEntity.ok(PetService.searchPets(query));
+    }
+
     // Gets a single pet by its ID
     @GetMapping("/pet/{petId}")
     public ResponseEntity<Pet> getPetById(@PathVariable String petId) {
@@ -77,24 +200,47 @@ public class PetController {
     // get the complete blockchain stored in ChainHub
     @GetMapping("/blockchain")
     public ResponseEntity<List<Block>> getBlockchain() {
-        return ResponseEntity.ok(ChainHub.blockChain);
+        // A snapshot, since the response is serialized after this returns; sealed blocks are read then, without the chain lock
+        return ResponseEntity.ok(ChainHub.getChainSnapshot());
     }
 
-    // Returns whether the blockchain is valid as a JSON object with "valid": true/false
+    // Gets a page of block headers (no payloads) starting at a height
+    @GetMapping("/headers")
+    public ResponseEntity<Map<String, Object>> getHeaders(@RequestParam(defaultValue = "0") int from,
+                                                          @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_HEADERS_PAGE));
+        List<BlockHeader> headers = ChainHub.getHeadersFrom(from, pageSize);
+        int tipHeight = ChainHub.getHeight();
+        int next = from + headers.size();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("headers", headers);
+        response.put("tipHeight", tipHeight);
+        response.put("nextFrom", headers.isEmpty() || next > tipHeight ? null : next);
+        return ResponseEntity.ok(response);
+    }
+
+    // Returns whether the blockchain is valid as a JSON object with "valid": true/false.
+    // headersOnly=true checks linkage and proof of work without reading block payloads.
     @GetMapping("/blockchain/validate")
-    public ResponseEntity<Map<String, Boolean>> validateBlockchain() {
-        boolean isValid = ChainHub.isChainValid();
+    public ResponseEntity<Map<String, Boolean>> validateBlockchain(
+            @RequestParam(defaultValue = "false") boolean headersOnly) {
+        boolean isValid = headersOnly ? ChainHub.isHeaderChainValid() : ChainHub.isChainValid();
         Map<String, Boolean> response = new HashMap<>();
         response.put("valid", isValid);
         return ResponseEntity.ok(response);
     }
 
-    // Trades a pet from one owner to another and returns success or error status
+    // Trades a pet from one owner to another and returns success or error status.
+    // The request carries fromOwner's public key and signature over the trade (see Wallet.tradeMessage).
     @PostMapping("/pet/trade")
     public ResponseEntity<Map<String, String>> tradePet(@RequestBody Map<String, String> request) {
         String petId = request.get("petId");
         String fromOwner = request.get("fromOwner");
         String toOwner = request.get("toOwner");
+        String previousTxHash = request.get("previousTxHash");
+        String publicKey = request.get("publicKey");
+        String signature = request.get("signature");
 
         // Input validation
         if (petId == null || petId.trim().isEmpty()) {
@@ -118,17 +264,46 @@ public class PetController {
             return ResponseEntity.badRequest().body(response);
         }
 
+        if (publicKey == null || signature == null || previousTxHash == null) {
+            Map<String, String> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "publicKey, signature and previousTxHash are required");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        AdmissionControl.Result admission = admissionControl.tryAdmit(fromOwner);
+        if (admission != AdmissionControl.Result.ADMITTED) {
+            return rejected(admission);
+        }
+
         try {
-            PetService.tradePet(petId, fromOwner, toOwner);
+            miningExecutor.mine(() -> {
+                PetService.tradePet(petId, fromOwner, toOwner, previousTxHash, publicKey, signature);
+                return null;
+            });
+            miningExecutor.io(() -> {
+                PetService.saveChanges();
+                return null;
+            });
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
             response.put("message", "Pet traded successfully");
             return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            // The tip kept moving under the miner; the trade is still valid, so ask the client to retry
+            return rejected(AdmissionControl.Result.OVERLOADED);
+        } catch (IOException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Saving failed: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
         } catch (Exception e) {
             Map<String, String> response = new HashMap<>();
             response.put("status", "error");
             response.put("message", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } finally {
+            admissionControl.release();
         }
     }
 
@@ -139,6 +314,23 @@ public class PetController {
         return ResponseEntity.ok(transactions);
     }
 
+    // Gets a Merkle proof that the pet's latest transaction is on the chain, with headers after the checkpoint
+    @GetMapping("/pet/{petId}/proof")
+    public ResponseEntity<?> getOwnershipProof(@PathVariable String petId,
+                                               @RequestParam(required = false) String checkpoint) {
+        if (PetService.getPetById(petId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            return ResponseEntity.ok(PetService.getOwnershipProof(petId, checkpoint));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     // Gets all transactions involving a specific owner address
     @GetMapping("/owner/{address}/transactions")
     public ResponseEntity<List<Transaction>> getOwnerTransactionHistory(@PathVariable String address) {
@@ -146,6 +338,44 @@ public class PetController {
         return ResponseEntity.ok(transactions);
     }
 
+    // Gets transactions in blocks whose time is within [from, to] (epoch milliseconds), in chain order.
+    // Pass nextCursor from the previous page as cursor to continue.
+    @GetMapping("/transactions")
+    public ResponseEntity<?> getTransactionsInRange(@RequestParam(defaultValue = "0") long from,
+                                                    @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+                                                    @RequestParam(required = false) Integer cursor,
+                                                    @RequestParam(defaultValue = "100") int limit) {
+        if (from > to) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "from must not be after to");
+            return ResponseEntity.badRequest().body(error);
+        }
+        if (cursor != null && cursor < 0) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "cursor must not be negative");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_TRANSACTIONS_PAGE));
+        return ResponseEntity.ok(PetService.getTransactionsInRange(from, to, cursor, pageSize));
+    }
+
+    // Gets admission control counters (pending mining work and rejections) and mining pool usage
+    @GetMapping("/admission")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        Map<String, Object> stats = admissionControl.getStats();
+        stats.putAll(miningExecutor.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    // Readiness probe: 200 once the chain and registry have loaded, 503 with the loading stage before that
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> getReadiness() {
+        Map<String, Object> status = persistenceService.getStatus();
+        HttpStatus httpStatus = persistenceService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(httpStatus).body(status);
+    }
+
     // Gets system statistics
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStats() {
@@ -0,0 +1,176 @@
+package com.example.blockchain;
+
+import java.util.*;
+
+/**
+ * Bitmap indexes over pet attributes for /api/pets/search.
+ * Bit positions are PetRegistry record numbers, and each type, color and rarity value has a BitSet of the
+ * records that hold it, so a filter is a few word-wide ANDs. Owners have far more distinct values, so each
+ * owner keeps a set of records instead of a bitmap the size of the whole registry.
+ * The registry owns the index and calls it under its own lock.
+ */
+public class PetIndex {
+
+    // Largest page served by search
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final List<String> SORT_FIELDS = List.of("none", "name", "type", "color", "rarity", "timeStamp");
+
+    // Search criteria; null fields don't filter
+    public static class Query {
+        public String type;
+        public String color;
+        public Integer minRarity;
+        public Integer maxRarity;
+        public String owner;
+        public String sort = "none";  // "none" returns matches in index order, which is stable but not meaningful
+        public boolean descending;
+        public int page;
+        public int size = 20;
+    }
+
+    // One page of matches plus the total number of matches
+    public static class Page {
+        private final List<Pet> pets;
+        private final int total;
+        private final int page;
+        private final int size;
+
+        Page(List<Pet> pets, int total, int page, int size) {
+            this.pets = pets;
+            this.total = total;
+            this.page = page;
+            this.size = size;
+        }
+
+        public List<Pet> getPets() { return pets; }
+        public int getTotal() { return total; }
+        public int getPage() { return page; }
+        public int getSize() { return size; }
+    }
+
+    private final PetRegistry registry;
+    private final BitSet live = new BitSet();
+
+    private final Map<String, BitSet> byType = new HashMap<>();
+    private final Map<String, BitSet> byColor = new HashMap<>();
+    private final Map<Integer, BitSet> byRarity = new HashMap<>();
+    private final Map<String, Set<Integer>> byOwner = new HashMap<>();
+
+    PetIndex(PetRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Indexes a record with its current values in the registry
+    void add(int record) {
+        live.set(record);
+        byType.computeIfAbsent(registry.type(record), key -> new BitSet()).set(record);
+        byColor.computeIfAbsent(registry.color(record), key -> new BitSet()).set(record);
+        byRarity.computeIfAbsent(registry.rarity(record), key -> new BitSet()).set(record);
+        byOwner.computeIfAbsent(registry.owner(record), key -> new HashSet<>()).add(record);
+    }
+
+    // Unindexes a record; call while the registry still holds its old values
+    void remove(int record) {
+        if (!live.get(record)) {
+            return;
+        }
+        live.clear(record);
+        clearBit(byType, registry.type(record), record);
+        clearBit(byColor, registry.color(record), record);
+        clearBit(byRarity, registry.rarity(record), record);
+        Set<Integer> owned = byOwner.get(registry.owner(record));
+        if (owned != null) {
+            owned.remove(record);
+            if (owned.isEmpty()) {
+                byOwner.remove(registry.owner(record));
+            }
+        }
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> index, K key, int record) {
+        BitSet bits = index.get(key);
+        if (bits != null) {
+            bits.clear(record);
+            if (bits.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // Records owned by an address
+    Set<Integer> ownedBy(String owner) {
+        return byOwner.getOrDefault(owner, Collections.emptySet());
+    }
+
+    // Number of addresses that own at least one pet
+    int ownerCount() {
+        return byOwner.size();
+    }
+
+    private Comparator<Integer> comparator(String sort) {
+        switch (sort) {
+            case "name": return Comparator.comparing(registry::name, String.CASE_INSENSITIVE_ORDER);
+            case "type": return Comparator.comparing(registry::type);
+            case "color": return Comparator.comparing(registry::color);
+            case "rarity": return Comparator.comparingInt(registry::rarity);
+            case "timeStamp": return Comparator.comparingLong(registry::timeStamp);
+            default: return null;
+        }
+    }
+
+    // Runs a query against the indexes and returns the requested page
+    Page search(Query query) {
+        BitSet matches = (BitSet) live.clone();
+
+        if (query.type != null) {
+            matches.and(byType.getOrDefault(query.type, new BitSet()));
+        }
+        if (query.color != null) {
+            matches.and(byColor.getOrDefault(query.color, new BitSet()));
+        }
+        if (query.minRarity != null || query.maxRarity != null) {
+            int min = query.minRarity == null ? Integer.MIN_VALUE : query.minRarity;
+            int max = query.maxRarity == null ? Integer.MAX_VALUE : query.maxRarity;
+            BitSet inRange = new BitSet();
+            for (Map.Entry<Integer, BitSet> entry : byRarity.entrySet()) {
+                if (entry.getKey() >= min && entry.getKey() <= max) {
+                    inRange.or(entry.getValue());
+                }
+            }
+            matches.and(inRange);
+        }
+        if (query.owner != null) {
+            BitSet owned = new BitSet();
+            for (int record : ownedBy(query.owner)) {
+                owned.set(record);
+            }
+            matches.and(owned);
+        }
+
+        int total = matches.cardinality();
+        int size = Math.max(1, Math.min(query.size, MAX_PAGE_SIZE));
+        long skip = (long) Math.max(0, query.page) * size;
+        List<Pet> page = new ArrayList<>();
+
+        Comparator<Integer> comparator = comparator(query.sort);
+        if (comparator == null) {
+            // Record order needs no sorting: walk the bitmap and stop once the page is full
+            int record = matches.nextSetBit(0);
+            for (long i = 0; record >= 0 && page.size() < size; i++, record = matches.nextSetBit(record + 1)) {
+                if (i >= skip) {
+                    page.add(registry.getRecord(record));
+                }
+            }
+        } else {
+            List<Integer> matched = new ArrayList<>(total);
+            matches.stream().forEach(matched::add);
+            // Ties keep record order so pages don't shuffle between requests
+            matched.sort(query.descending ? comparator.reversed() : comparator);
+            for (long i = skip; i < matched.size() && page.size() < size; i++) {
+                page.add(registry.getRecord(matched.get((int) i)));
+            }
+        }
+        return new Page(page, total, Math.max(0, query.page), size);
+    }
+}
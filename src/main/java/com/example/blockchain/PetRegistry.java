@@ -0,0 +1,364 @@
+package com.example.blockchain;
+
+import java.util.*;
+
+/**
+ * All pets, keyed by their id as a 64-bit number.
+ * Pet ids are 16 hex characters, so each fits in a long. An open-addressing table maps the key to a
+ * record number, and the pet's fields live in one primitive array per field, indexed by record number:
+ * no boxed keys, no Pet object per pet, and the 32-byte hashes of the pet's source block and latest
+ * transaction stored as four longs each.
+ * Owners, types and colors are stored as codes into string tables. Record numbers stay put while the
+ * pet exists, so the registry's PetIndex uses them as bitmap positions and is kept in step under the same
+ * lock. Pet objects are only built at the REST boundary.
+ */
+public class PetRegistry {
+
+    private static final int HASH_WORDS = 4;  // a SHA-256 hex hash is 32 bytes
+    private static final int NO_RECORD = -1;
+
+    // Interns repeated strings as small int codes
+    private static class StringTable {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int code(String value) {
+            return codes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+    }
+
+    // Open-addressing table: key -> record + 1, 0 marks an empty bucket
+    private long[] tableKeys = new long[16];
+    private int[] tableRecords = new int[16];
+
+    // Columns indexed by record number
+    private long[] ids = new long[16];
+    private String[] names = new String[16];
+    private int[] types = new int[16];
+    private int[] colors = new int[16];
+    private byte[] rarities = new byte[16];
+    private int[] owners = new int[16];
+    private long[] timeStamps = new long[16];
+    private long[] blockHashes = new long[16 * HASH_WORDS];
+    private final BitSet hasBlockHash = new BitSet();
+    private long[] latestTxHashes = new long[16 * HASH_WORDS];
+    private final BitSet hasLatestTx = new BitSet();
+    private final BitSet live = new BitSet();
+
+    private final StringTable typeTable = new StringTable();
+    private final StringTable colorTable = new StringTable();
+    private final StringTable ownerTable = new StringTable();
+
+    // Ids that aren't 16 lowercase hex characters (only hand-made blocks have them) are kept aside
+    private final Map<String, Integer> otherIds = new HashMap<>();
+    private final Map<Integer, String> otherIdByRecord = new HashMap<>();
+
+    private final PetIndex index = new PetIndex(this);
+
+    private final Deque<Integer> freeRecords = new ArrayDeque<>();
+    private int recordCount;  // records ever allocated, including freed ones
+    private int size;
+
+    // True for ids created by PetService.createPet
+    private static boolean isCanonical(String id) {
+        return id.length() == 16 && isLowerHex(id);
+    }
+
+    private static boolean isLowerHex(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String idString(long key) {
+        String hex = Long.toHexString(key);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    private static int bucket(long key, int mask) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    // Record number for an id, or -1
+    public synchronized int recordOf(String id) {
+        if (!isCanonical(id)) {
+            return otherIds.getOrDefault(id, NO_RECORD);
+        }
+        long key = Long.parseUnsignedLong(id, 16);
+        int mask = tableKeys.length - 1;
+        for (int i = bucket(key, mask); tableRecords[i] != 0; i = (i + 1) & mask) {
+            if (tableKeys[i] == key) {
+                return tableRecords[i] - 1;
+            }
+        }
+        return NO_RECORD;
+    }
+
+    public synchronized boolean contains(String id) {
+        return recordOf(id) != NO_RECORD;
+    }
+
+    // Adds a pet or overwrites an existing one with the same id; returns its record number
+    public synchronized int put(Pet pet, String blockHash) {
+        int record = recordOf(pet.getId());
+        if (record == NO_RECORD) {
+            record = allocate(pet.getId());
+        } else {
+            index.remove(record);
+        }
+        names[record] = pet.getName();
+        types[record] = typeTable.code(pet.getType());
+        colors[record] = colorTable.code(pet.getColor());
+        rarities[record] = (byte) pet.getRarity();
+        owners[record] = ownerTable.code(pet.getOwner());
+        timeStamps[record] = pet.getTimeStamp();
+        setBlockHash(record, blockHash);
+        index.add(record);
+        return record;
+    }
+
+    // Records a change of owner; returns the record number, or -1 if the pet doesn't exist
+    public synchronized int setOwner(String id, String owner, long timeStamp) {
+        int record = recordOf(id);
+        if (record != NO_RECORD) {
+            index.remove(record);
+            owners[record] = ownerTable.code(owner);
+            timeStamps[record] = timeStamp;
+            index.add(record);
+        }
+        return record;
+    }
+
+    public synchronized void setBlockHash(String id, String blockHash) {
+        int record = recordOf(id);
+        if (record != NO_RECORD) {
+            setBlockHash(record, blockHash);
+        }
+    }
+
+    private void setBlockHash(int record, String blockHash) {
+        hasBlockHash.set(record, writeHash(blockHashes, record, blockHash));
+    }
+
+    // Records the block hash of the pet's latest transaction; trades must name it
+    public synchronized void setLatestTxHash(String id, String txHash) {
+        int record = recordOf(id);
+        if (record != NO_RECORD) {
+            hasLatestTx.set(record, writeHash(latestTxHashes, record, txHash));
+        }
+    }
+
+    // Stores a hex hash as four longs at a record; returns false, storing nothing, if it isn't a hash
+    private static boolean writeHash(long[] column, int record, String hash) {
+        // Block hashes are 64 hex characters; anything else is treated as unknown
+        if (hash == null || hash.length() != 16 * HASH_WORDS || !isLowerHex(hash)) {
+            return false;
+        }
+        for (int word = 0; word < HASH_WORDS; word++) {
+            column[record * HASH_WORDS + word] = Long.parseUnsignedLong(hash.substring(word * 16, word * 16 + 16), 16);
+        }
+        return true;
+    }
+
+    private static String readHash(long[] column, int record) {
+        StringBuilder hash = new StringBuilder(16 * HASH_WORDS);
+        for (int word = 0; word < HASH_WORDS; word++) {
+            hash.append(idString(column[record * HASH_WORDS + word]));
+        }
+        return hash.toString();
+    }
+
+    // Removes a pet; returns the record number it had, or -1 if it didn't exist
+    public synchronized int remove(String id) {
+        int record = recordOf(id);
+        if (record == NO_RECORD) {
+            return NO_RECORD;
+        }
+
+        index.remove(record);
+        if (isCanonical(id)) {
+            removeFromTable(Long.parseUnsignedLong(id, 16));
+        } else {
+            otherIds.remove(id);
+            otherIdByRecord.remove(record);
+        }
+        names[record] = null;
+        hasBlockHash.clear(record);
+        hasLatestTx.clear(record);
+        live.clear(record);
+        freeRecords.push(record);
+        size--;
+        return record;
+    }
+
+    private int allocate(String id) {
+        int record;
+        if (!freeRecords.isEmpty()) {
+            record = freeRecords.pop();
+        } else {
+            record = recordCount++;
+            ensureColumns(recordCount);
+        }
+        live.set(record);
+        size++;
+
+        if (isCanonical(id)) {
+            long key = Long.parseUnsignedLong(id, 16);
+            ids[record] = key;
+            if (size * 2 > tableKeys.length) {
+                resizeTable(tableKeys.length * 2);
+            }
+            insertIntoTable(key, record);
+        } else {
+            otherIds.put(id, record);
+            otherIdByRecord.put(record, id);
+        }
+        return record;
+    }
+
+    private void insertIntoTable(long key, int record) {
+        int mask = tableKeys.length - 1;
+        int i = bucket(key, mask);
+        while (tableRecords[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = key;
+        tableRecords[i] = record + 1;
+    }
+
+    // Linear-probing delete: shift later entries of the probe run back so lookups don't stop early
+    private void removeFromTable(long key) {
+        int mask = tableKeys.length - 1;
+        int i = bucket(key, mask);
+        while (tableKeys[i] != key || tableRecords[i] == 0) {
+            i = (i + 1) & mask;
+        }
+        tableRecords[i] = 0;
+
+        for (int j = (i + 1) & mask; tableRecords[j] != 0; j = (j + 1) & mask) {
+            int home = bucket(tableKeys[j], mask);
+            // Move the entry into the hole if its home bucket is not between the hole and its position
+            boolean movable = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+            if (movable) {
+                tableKeys[i] = tableKeys[j];
+                tableRecords[i] = tableRecords[j];
+                tableRecords[j] = 0;
+                i = j;
+            }
+        }
+    }
+
+    private void resizeTable(int capacity) {
+        long[] oldKeys = tableKeys;
+        int[] oldRecords = tableRecords;
+        tableKeys = new long[capacity];
+        tableRecords = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldRecords[i] != 0) {
+                insertIntoTable(oldKeys[i], oldRecords[i] - 1);
+            }
+        }
+    }
+
+    private void ensureColumns(int records) {
+        if (records <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(records, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        types = Arrays.copyOf(types, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+        rarities = Arrays.copyOf(rarities, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        timeStamps = Arrays.copyOf(timeStamps, capacity);
+        blockHashes = Arrays.copyOf(blockHashes, capacity * HASH_WORDS);
+        latestTxHashes = Arrays.copyOf(latestTxHashes, capacity * HASH_WORDS);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized Pet get(String id) {
+        int record = recordOf(id);
+        return record == NO_RECORD ? null : getRecord(record);
+    }
+
+    // Builds the Pet for a record
+    public synchronized Pet getRecord(int record) {
+        return new Pet(id(record), names[record], type(record), color(record), rarities[record],
+                owner(record), timeStamps[record]);
+    }
+
+    public synchronized List<Pet> getAll() {
+        List<Pet> pets = new ArrayList<>(size);
+        live.stream().forEach(record -> pets.add(getRecord(record)));
+        return pets;
+    }
+
+    public synchronized List<Pet> getByOwner(String owner) {
+        List<Pet> pets = new ArrayList<>();
+        new TreeSet<>(index.ownedBy(owner)).forEach(record -> pets.add(getRecord(record)));
+        return pets;
+    }
+
+    // Number of addresses that own at least one pet
+    public synchronized int ownerCount() {
+        return index.ownerCount();
+    }
+
+    public synchronized PetIndex.Page search(PetIndex.Query query) {
+        return index.search(query);
+    }
+
+    // Hex hash of the block that created the pet, or null
+    public synchronized String getBlockHash(String id) {
+        int record = recordOf(id);
+        if (record == NO_RECORD || !hasBlockHash.get(record)) {
+            return null;
+        }
+        return readHash(blockHashes, record);
+    }
+
+    // Hex hash of the block holding the pet's latest transaction, or null if it isn't known
+    public synchronized String getLatestTxHash(String id) {
+        int record = recordOf(id);
+        if (record == NO_RECORD || !hasLatestTx.get(record)) {
+            return null;
+        }
+        return readHash(latestTxHashes, record);
+    }
+
+    // Number of pets whose latest transaction isn't known, e.g. after loading files saved before it was kept
+    public synchronized int missingLatestTxCount() {
+        BitSet missing = (BitSet) live.clone();
+        missing.andNot(hasLatestTx);
+        return missing.cardinality();
+    }
+
+    // Column accessors by record number, used by PetIndex
+    synchronized String id(int record) {
+        String other = otherIdByRecord.get(record);
+        return other != null ? other : idString(ids[record]);
+    }
+
+    synchronized String name(int record) { return names[record]; }
+    synchronized String type(int record) { return typeTable.value(types[record]); }
+    synchronized String color(int record) { return colorTable.value(colors[record]); }
+    synchronized int rarity(int record) { return rarities[record]; }
+    synchronized String owner(int record) { return ownerTable.value(owners[record]); }
+    synchronized long timeStamp(int record) { return timeStamps[record]; }
+}
@@ -2,69 +2,160 @@ package com.example.blockchain;
 
 import java.io.*;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 public class PetService {
 
-    // Registry to store all pets by their ID for quick lookup
-    private static final Map<String, Pet> petRegistry = new HashMap<>();
-
-    // Map to track which block hash created which pet (for deriving attributes)
-    private static final Map<String, String> petIdToBlockHash = new HashMap<>();
+    // All pets by ID, with the block hash that created each one (for deriving attributes), the block hash
+    // of each one's latest transaction (which trades must reference) and the attribute indexes used by search
+    private static final PetRegistry petRegistry = new PetRegistry();
 
     private static final Gson gson = new Gson();
     private static final String PETS_FILE = "pets.json";
     private static final String PET_BLOCKHASH_FILE = "pet_blockhash.json";
+    private static final String PET_LATEST_TX_FILE = "pet_latest_tx.json";
     private static final Gson fileGson = new GsonBuilder().setPrettyPrinting().create();
 
-    // Load pet registry from file
-    public static void loadPetRegistry() {
+    // Blocks copied out of the chain per lock acquisition when scanning the whole history
+    private static final int SCAN_BATCH = 1000;
+
+    // How many times to re-mine a block when the tip moves underneath it
+    private static final int MAX_MINING_ATTEMPTS = 3;
+
+    static {
+        // Keep the registry in step with the canonical chain, including reorgs
+        ChainHub.addListener(new ChainListener() {
+            @Override
+            public boolean canConnect(Block block) {
+                return canApply(block);
+            }
+
+            @Override
+            public void onBlockConnected(Block block) {
+                applyBlock(block);
+            }
+
+            @Override
+            public void onBlockDisconnected(Block block) {
+                revertBlock(block);
+            }
+        });
+    }
+
+    // Load pet registry from file; throws if a file exists but can't be parsed
+    public static void loadPetRegistry() throws IOException {
         try {
-            File petsFile = new File(PETS_FILE);
+            // Both files are read entry by entry straight into the registry, without building a map first
+            File petsFile = ChainHub.dataFile(PETS_FILE).toFile();
             if (petsFile.exists()) {
-                String content = new String(Files.readAllBytes(Paths.get(PETS_FILE)));
-                if (!content.trim().isEmpty()) {
-                    Type mapType = new TypeToken<Map<String, Pet>>(){}.getType();
-                    Map<String, Pet> loaded = fileGson.fromJson(content, mapType);
-                    if (loaded != null) {
-                        petRegistry.putAll(loaded);
-                        System.out.println("Pet registry loaded successfully. Pets: " + petRegistry.size());
+                try (JsonReader reader = new JsonReader(Files.newBufferedReader(ChainHub.dataFile(PETS_FILE)))) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        reader.nextName();
+                        Pet pet = fileGson.fromJson(reader, Pet.class);
+                        petRegistry.put(pet, null);
                     }
+                    reader.endObject();
                 }
+                System.out.println("Pet registry loaded successfully. Pets: " + petRegistry.size());
             }
 
-            File blockHashFile = new File(PET_BLOCKHASH_FILE);
+            File blockHashFile = ChainHub.dataFile(PET_BLOCKHASH_FILE).toFile();
             if (blockHashFile.exists()) {
-                String content = new String(Files.readAllBytes(Paths.get(PET_BLOCKHASH_FILE)));
-                if (!content.trim().isEmpty()) {
-                    Type mapType = new TypeToken<Map<String, String>>(){}.getType();
-                    Map<String, String> loaded = fileGson.fromJson(content, mapType);
-                    if (loaded != null) {
-                        petIdToBlockHash.putAll(loaded);
+                try (JsonReader reader = new JsonReader(Files.newBufferedReader(ChainHub.dataFile(PET_BLOCKHASH_FILE)))) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        petRegistry.setBlockHash(reader.nextName(), reader.nextString());
                     }
+                    reader.endObject();
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error loading pet registry: " + e.getMessage());
+
+            File latestTxFile = ChainHub.dataFile(PET_LATEST_TX_FILE).toFile();
+            if (latestTxFile.exists()) {
+                try (JsonReader reader = new JsonReader(Files.newBufferedReader(ChainHub.dataFile(PET_LATEST_TX_FILE)))) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        petRegistry.setLatestTxHash(reader.nextName(), reader.nextString());
+                    }
+                    reader.endObject();
+                }
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            // Gson's errors for malformed files; missing files are fine, unreadable ones are not
+            throw new IOException("Pet registry files are not valid: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Finds the latest transaction of every pet loaded without one, such as pets saved before
+     * pet_latest_tx.json existed, with one scan of the chain. Runs once both the chain and the registry
+     * are loaded, before the node serves trades, and takes the chain lock only per batch of blocks.
+     */
+    public static void fillMissingLatestTransactions() {
+        int missing = petRegistry.missingLatestTxCount();
+        if (missing == 0) {
+            return;
+        }
+        Map<String, String> latest = new HashMap<>();
+        forEachCanonicalBlock(block -> {
+            Transaction transaction = parseTransactionFromBlock(block);
+            if (transaction != null && transaction.getPetId() != null) {
+                latest.put(transaction.getPetId(), block.hash);
+            }
+        });
+        latest.forEach((petId, hash) -> {
+            if (petRegistry.getLatestTxHash(petId) == null) {
+                petRegistry.setLatestTxHash(petId, hash);
+            }
+        });
+        System.out.println("Found the latest transaction of " + (missing - petRegistry.missingLatestTxCount())
+                + " pets on the chain");
+    }
+
     // Save pet registry to file
-    public static void savePetRegistry() {
+    public static synchronized void savePetRegistry() {
         try {
-            String petsJson = fileGson.toJson(petRegistry);
-            Files.write(Paths.get(PETS_FILE), petsJson.getBytes());
-            
-            String blockHashJson = fileGson.toJson(petIdToBlockHash);
-            Files.write(Paths.get(PET_BLOCKHASH_FILE), blockHashJson.getBytes());
-            
-            System.out.println("Pet registry saved successfully. Pets: " + petRegistry.size());
+            List<Pet> pets = petRegistry.getAll();
+            // Same layout as before: {petId: pet} and {petId: blockHash}
+            try (JsonWriter writer = fileGson.newJsonWriter(Files.newBufferedWriter(ChainHub.dataFile(PETS_FILE)))) {
+                writer.beginObject();
+                for (Pet pet : pets) {
+                    writer.name(pet.getId());
+                    fileGson.toJson(pet, Pet.class, writer);
+                }
+                writer.endObject();
+            }
+
+            try (JsonWriter writer = fileGson.newJsonWriter(Files.newBufferedWriter(ChainHub.dataFile(PET_BLOCKHASH_FILE)))) {
+                writer.beginObject();
+                for (Pet pet : pets) {
+                    String blockHash = petRegistry.getBlockHash(pet.getId());
+                    if (blockHash != null) {
+                        writer.name(pet.getId()).value(blockHash);
+                    }
+                }
+                writer.endObject();
+            }
+
+            try (JsonWriter writer = fileGson.newJsonWriter(Files.newBufferedWriter(ChainHub.dataFile(PET_LATEST_TX_FILE)))) {
+                writer.beginObject();
+                for (Pet pet : pets) {
+                    String latestTxHash = petRegistry.getLatestTxHash(pet.getId());
+                    if (latestTxHash != null) {
+                        writer.name(pet.getId()).value(latestTxHash);
+                    }
+                }
+                writer.endObject();
+            }
+
+            System.out.println("Pet registry saved successfully. Pets: " + pets.size());
         } catch (Exception e) {
             System.err.println("Error saving pet registry: " + e.getMessage());
         }
@@ -84,70 +175,72 @@ public class PetService {
             "Silver", "Brown", "Gray", "Cyan", "Magenta"
     };
 
-    // Creates a new pet for an owner and records it on the blockchain
-    public static Pet createPet(String ownerAddress, String petName) {
-        // Generate unique pet ID
-        String petId = StringUtil.applySha256(ownerAddress + petName + System.currentTimeMillis())
-                .substring(0, 16);
+    // Creates a new pet for an owner and records it on the blockchain. The owner signs
+    // Wallet.createMessage(ownerAddress, petName, timestamp), so nobody can mint pets in someone else's name.
+    public static Pet createPet(String ownerAddress, String petName, long timestamp, String publicKey, String signature) {
+        // Validate the signature before spending any work on mining
+        if (!ownerAddress.equals(Wallet.addressOf(publicKey))) {
+            throw new IllegalArgumentException("Public key does not belong to " + ownerAddress);
+        }
+        if (!SignatureVerifier.verifyCreate(ownerAddress, petName, timestamp, publicKey, signature)) {
+            throw new IllegalArgumentException("Invalid signature for " + ownerAddress);
+        }
+
+        // The pet ID comes from the signed message, so sending the same request twice creates one pet
+        String petId = petIdFor(ownerAddress, petName, timestamp);
+        Runnable checkNew = () -> {
+            if (petRegistry.contains(petId)) {
+                throw new IllegalArgumentException("Pet with ID " + petId + " already exists");
+            }
+        };
+        checkNew.run();
 
-        // Get previous hash for the new block
-        String previousHash = ChainHub.blockChain.isEmpty()
-                ? "0"
-                : ChainHub.blockChain.get(ChainHub.blockChain.size() - 1).hash;
+        // Mine the block onto the tip; the chain listener adds the pet to the registry.
+        // The caller saves with saveChanges() once the block is on the chain.
+        mineOntoTip(createTransactionData(ownerAddress, petName, timestamp, publicKey, signature), checkNew);
 
-        // Create transaction data as JSON
-        String transactionData = gson.toJson(Map.of(
+        return petRegistry.get(petId);
+    }
+
+    // ID of the pet a signed create makes
+    public static String petIdFor(String ownerAddress, String petName, long timestamp) {
+        return StringUtil.applySha256(Wallet.createMessage(ownerAddress, petName, timestamp)).substring(0, 16);
+    }
+
+    // Transaction data of a CREATE_PET block
+    static String createTransactionData(String ownerAddress, String petName, long timestamp,
+                                        String publicKey, String signature) {
+        return gson.toJson(Map.of(
                 "type", "CREATE_PET",
-                "petId", petId,
+                "petId", petIdFor(ownerAddress, petName, timestamp),
                 "ownerAddress", ownerAddress,
                 "petName", petName,
-                "timestamp", System.currentTimeMillis()
+                "timestamp", timestamp,
+                "publicKey", publicKey,
+                "signature", signature
         ));
+    }
 
-        // Create and mine the block
-        Block newBlock = new Block(transactionData, previousHash);
-        newBlock.mineBlock(ChainHub.difficulty);
-        ChainHub.blockChain.add(newBlock);
-        ChainHub.saveBlockchain(); // Save blockchain after adding block
-
-        // Derive pet attributes from the block hash
-        String blockHash = newBlock.hash;
-        String petType = derivePetType(blockHash);
-        String petColor = derivePetColor(blockHash);
-        int rarity = deriveRarity(blockHash);
-
-        // Create the pet
-        Pet pet = new Pet(
-                petId,
-                petName,
-                petType,
-                petColor,
-                rarity,
-                ownerAddress,
-                System.currentTimeMillis()
-        );
-
-        // Store in registry
-        petRegistry.put(petId, pet);
-        petIdToBlockHash.put(petId, blockHash);
-
-        // Save to disk
-        savePetRegistry();
-
-        return pet;
+    // Transaction data of a CREATE_PET signed by the owner's wallet, for tests and tools holding the key
+    static String createTransactionData(Wallet owner, String petName, long timestamp) {
+        return createTransactionData(owner.getAddress(), petName, timestamp, owner.getPublicKey(),
+                owner.sign(Wallet.createMessage(owner.getAddress(), petName, timestamp)));
     }
 
     // Retrieves all pets owned by a specific address
 
     public static List<Pet> getPetsByOwner(String address) {
-        return petRegistry.values().stream()
-                .filter(pet -> pet.getOwner().equals(address))
-                .collect(Collectors.toList());
+        return petRegistry.getByOwner(address);
     }
 
     // Retrieves all pets in the system
     public static List<Pet> getAllPets() {
-        return new ArrayList<>(petRegistry.values());
+        return petRegistry.getAll();
+    }
+
+    // Filters, sorts and pages pets using the attribute indexes
+    public static PetIndex.Page searchPets(PetIndex.Query query) {
+        return petRegistry.search(query);
     }
 
     // Get a pet by its ID
@@ -155,8 +248,10 @@ public class PetService {
         return petRegistry.get(petId);
     }
 
-    // Trades a pet from one owner to another and records it on the blockchain
-    public static void tradePet(String petId, String fromOwner, String toOwner) {
+    // Trades a pet from one owner to another and records it on the blockchain.
+    // The trade must be signed by fromOwner's key over Wallet.tradeMessage(...).
+    public static void tradePet(String petId, String fromOwner, String toOwner,
+                                String previousTxHash, String publicKey, String signature) {
         // Validate pet exists
         Pet pet = petRegistry.get(petId);
         if (pet == null) {
@@ -173,10 +268,14 @@ public class PetService {
             throw new IllegalArgumentException("Cannot trade pet to the same owner");
         }
 
-        // Get previous hash for the new block
-        String previousHash = ChainHub.blockChain.isEmpty()
-                ? "0"
-                : ChainHub.blockChain.get(ChainHub.blockChain.size() - 1).hash;
+        // Validate the signature before spending any work on mining
+        if (!fromOwner.equals(Wallet.addressOf(publicKey))) {
+            throw new IllegalArgumentException("Public key does not belong to " + fromOwner);
+        }
+        checkLatestTransaction(petId, previousTxHash);
+        if (!SignatureVerifier.verifyTrade(petId, fromOwner, toOwner, previousTxHash, publicKey, signature)) {
+            throw new IllegalArgumentException("Invalid signature for " + fromOwner);
+        }
 
         // Create trade transaction data as JSON
         String transactionData = gson.toJson(Map.of(
@@ -184,33 +283,143 @@ public class PetService {
                 "petId", petId,
                 "fromOwner", fromOwner,
                 "toOwner", toOwner,
+                "previousTxHash", previousTxHash,
+                "publicKey", publicKey,
+                "signature", signature,
                 "timestamp", System.currentTimeMillis()
         ));
 
-        // Create and mine the block
-        Block newBlock = new Block(transactionData, previousHash);
-        newBlock.mineBlock(ChainHub.difficulty);
-        ChainHub.blockChain.add(newBlock);
-        ChainHub.saveBlockchain(); // Save blockchain after adding block
-
-        // Update pet ownership
-        // Create new pet with updated owner (Pet is immutable, so we need to replace it)
-        Pet updatedPet = new Pet(
-                pet.getId(),
-                pet.getName(),
-                pet.getType(),
-                pet.getColor(),
-                pet.getRarity(),
-                toOwner,
-                System.currentTimeMillis()
-        );
-
-        petRegistry.put(petId, updatedPet);
-
-        // Save to disk
+        // Mine the block onto the tip; the chain listener updates pet ownership.
+        // Re-check right before appending in case another trade of this pet got in while we mined.
+        mineOntoTip(transactionData, () -> checkLatestTransaction(petId, previousTxHash));
+    }
+
+    // Saves the chain and the pet registry after createPet or tradePet
+    public static void saveChanges() throws IOException {
+        ChainHub.saveBlockchain();
         savePetRegistry();
     }
 
+    // Block hash of the pet's latest transaction on the canonical chain, or null if the pet doesn't exist.
+    // Kept in the registry as blocks are applied and reverted, and filled in at load, so it never scans the chain.
+    public static String getLatestTransactionHash(String petId) {
+        return petRegistry.getLatestTxHash(petId);
+    }
+
+    // Rejects a trade signed against an older state of the pet, so a signature can't be replayed
+    private static void checkLatestTransaction(String petId, String previousTxHash) {
+        if (previousTxHash == null || !previousTxHash.equals(getLatestTransactionHash(petId))) {
+            throw new IllegalArgumentException("Trade must reference the pet's latest transaction "
+                    + getLatestTransactionHash(petId));
+        }
+    }
+
+    // Mines a block on top of the current tip, retrying if a block from a peer took the tip while mining.
+    // The check runs under the chain lock immediately before the block is appended.
+    // Throws IllegalStateException if the tip keeps moving, which callers report as busy rather than bad input.
+    private static Block mineOntoTip(String transactionData, Runnable check) {
+        for (int attempt = 1; attempt <= MAX_MINING_ATTEMPTS; attempt++) {
+            Block newBlock = new Block(transactionData, ChainHub.getTipHash());
+            newBlock.mineBlock(ChainHub.difficulty);
+
+            ChainHub.AddResult result;
+            synchronized (ChainHub.class) {
+                check.run();
+                result = ChainHub.addBlock(newBlock);
+            }
+            if (result == ChainHub.AddResult.EXTENDED || result == ChainHub.AddResult.REORGANIZED) {
+                return newBlock;
+            }
+            System.out.println("Mined block was not added to the chain (" + result + "), retrying");
+        }
+        throw new IllegalStateException("Could not add block to the chain after "
+                + MAX_MINING_ATTEMPTS + " attempts");
+    }
+
+    // True if the block's transaction can be applied to the registry as it stands, i.e. on top of the block's parent
+    private static boolean canApply(Block block) {
+        Transaction transaction = parseTransactionFromBlock(block);
+        if (transaction == null) {
+            return true;
+        }
+        String petId = transaction.getPetId();
+        if ("CREATE_PET".equals(transaction.getType())) {
+            if (petRegistry.contains(petId)) {
+                System.out.println("Rejecting block " + block.hash + ": pet " + petId + " already exists");
+                return false;
+            }
+            return true;
+        }
+
+        // A trade must come from the pet's owner on this branch, and a signed trade must follow the pet's
+        // latest transaction here, so an old signature can't be mined again to replay the trade
+        Pet pet = petRegistry.get(petId);
+        if (pet == null || !pet.getOwner().equals(transaction.getFromOwner()) || transaction.getToOwner() == null) {
+            System.out.println("Rejecting block " + block.hash + ": pet " + petId + " is not owned by "
+                    + transaction.getFromOwner());
+            return false;
+        }
+        if (block.getMerkleRoot() != null && !Objects.equals(transaction.getPreviousTxHash(), getLatestTransactionHash(petId))) {
+            System.out.println("Rejecting block " + block.hash + ": trade does not follow pet " + petId
+                    + "'s latest transaction");
+            return false;
+        }
+        return true;
+    }
+
+    // Applies a newly connected block's transaction to the registry
+    private static void applyBlock(Block block) {
+        Transaction transaction = parseTransactionFromBlock(block);
+        if (transaction == null) {
+            return;
+        }
+
+        String petId = transaction.getPetId();
+        if ("CREATE_PET".equals(transaction.getType())) {
+            // Derive pet attributes from the block hash
+            Pet pet = new Pet(
+                    petId,
+                    transaction.getPetName(),
+                    derivePetType(block.hash),
+                    derivePetColor(block.hash),
+                    deriveRarity(block.hash),
+                    transaction.getOwnerAddress(),
+                    block.getTimeStamp()
+            );
+            petRegistry.put(pet, block.hash);
+        } else {
+            petRegistry.setOwner(petId, transaction.getToOwner(), block.getTimeStamp());
+        }
+        petRegistry.setLatestTxHash(petId, block.hash);
+    }
+
+    // Undoes a disconnected block's transaction in the registry
+    private static void revertBlock(Block block) {
+        Transaction transaction = parseTransactionFromBlock(block);
+        if (transaction == null) {
+            return;
+        }
+
+        String petId = transaction.getPetId();
+        if ("CREATE_PET".equals(transaction.getType())) {
+            petRegistry.remove(petId);
+            return;
+        }
+
+        // The pet goes back to how its previous transaction left it. A signed trade names that transaction.
+        // An unsigned trade from before signatures doesn't, so the pet's last transaction left on the chain
+        // is looked up; that scan only happens for a reorg below the legacy height.
+        String previous = transaction.getPreviousTxHash();
+        if (previous == null) {
+            List<Transaction> history = getPetTransactionHistory(petId);
+            previous = history.isEmpty() ? null : history.get(history.size() - 1).getBlockHash();
+        }
+        petRegistry.setLatestTxHash(petId, previous);
+        Block previousBlock = previous == null ? null : ChainHub.getBlock(previous);
+        long timeStamp = previousBlock == null ? block.getTimeStamp() : previousBlock.getTimeStamp();
+        petRegistry.setOwner(petId, transaction.getFromOwner(), timeStamp);
+    }
+
     // Derives pet type from block hash
     private static String derivePetType(String hash) {
         // Use first character of hash to determine type
@@ -238,7 +447,7 @@ public class PetService {
     }
 
     // Parses a transaction from block data and returns a Transaction object
-    private static Transaction parseTransactionFromBlock(Block block) {
+    static Transaction parseTransactionFromBlock(Block block) {
         try {
             String blockData = block.getData();
             if (blockData == null || blockData.trim().isEmpty()) {
@@ -278,11 +487,16 @@ public class PetService {
                 String petName = (String) dataMap.get("petName");
                 transaction = new Transaction(type, petId, ownerAddress, null, null, petName, 
                                              timestamp, block.hash, block.getTimeStamp());
+                transaction.setPublicKey((String) dataMap.get("publicKey"));
+                transaction.setSignature((String) dataMap.get("signature"));
             } else { // TRADE_PET
                 String fromOwner = (String) dataMap.get("fromOwner");
                 String toOwner = (String) dataMap.get("toOwner");
                 transaction = new Transaction(type, petId, null, fromOwner, toOwner, null, 
                                              timestamp, block.hash, block.getTimeStamp());
+                transaction.setPreviousTxHash((String) dataMap.get("previousTxHash"));
+                transaction.setPublicKey((String) dataMap.get("publicKey"));
+                transaction.setSignature((String) dataMap.get("signature"));
             }
 
             return transaction;
@@ -292,19 +506,29 @@ public class PetService {
         }
     }
 
+    // Visits the canonical chain oldest first. Blocks are copied out a batch at a time under the chain lock,
+    // so appends during the scan can't break it; like any unlocked read, a reorg mid-scan may mix branches.
+    private static void forEachCanonicalBlock(Consumer<Block> action) {
+        int height = 0;
+        List<Block> batch;
+        while (!(batch = ChainHub.getBlocksFrom(height, SCAN_BATCH)).isEmpty()) {
+            batch.forEach(action);
+            height += batch.size();
+        }
+    }
+
     // Gets all transactions for a specific pet ID
     public static List<Transaction> getPetTransactionHistory(String petId) {
         List<Transaction> transactions = new ArrayList<>();
         
-        for (Block block : ChainHub.blockChain) {
+        forEachCanonicalBlock(block -> {
             Transaction transaction = parseTransactionFromBlock(block);
             if (transaction != null && petId.equals(transaction.getPetId())) {
                 transactions.add(transaction);
             }
-        }
+        });
         
-        // Sort by timestamp (oldest first)
-        transactions.sort(Comparator.comparing(Transaction::getBlockTimestamp));
+        // Chain order is already oldest first
         return transactions;
     }
 
@@ -312,7 +536,7 @@ public class PetService {
     public static List<Transaction> getOwnerTransactionHistory(String address) {
         List<Transaction> transactions = new ArrayList<>();
         
-        for (Block block : ChainHub.blockChain) {
+        forEachCanonicalBlock(block -> {
             Transaction transaction = parseTransactionFromBlock(block);
             if (transaction != null) {
                 // Check if this address is involved in the transaction
@@ -329,10 +553,9 @@ public class PetService {
                     transactions.add(transaction);
                 }
             }
-        }
+        });
         
-        // Sort by timestamp (oldest first)
-        transactions.sort(Comparator.comparing(Transaction::getBlockTimestamp));
+        // Chain order is already oldest first
         return transactions;
     }
 
@@ -340,33 +563,104 @@ public class PetService {
     public static List<Transaction> getAllTransactions() {
         List<Transaction> transactions = new ArrayList<>();
         
-        for (Block block : ChainHub.blockChain) {
+        forEachCanonicalBlock(block -> {
             Transaction transaction = parseTransactionFromBlock(block);
             if (transaction != null) {
                 transactions.add(transaction);
             }
-        }
+        });
         
-        // Sort by timestamp (oldest first)
-        transactions.sort(Comparator.comparing(Transaction::getBlockTimestamp));
+        // Chain order is already oldest first
         return transactions;
     }
 
+    // Gets transactions from blocks whose time falls within [from, to], in chain order, starting at the
+    // cursor height. Returns up to limit transactions and the cursor for the next page (null at the end).
+    public static Map<String, Object> getTransactionsInRange(long from, long to, Integer cursor, int limit) {
+        int[] range = ChainHub.getHeightRange(from, to);
+        int height = cursor == null ? range[0] : Math.max(cursor, range[0]);
+        List<Transaction> transactions = new ArrayList<>();
+
+        while (height < range[1] && transactions.size() < limit) {
+            List<Block> blocks = ChainHub.getBlocksFrom(height, Math.min(range[1] - height, limit));
+            if (blocks.isEmpty()) {
+                break; // the chain got shorter in a reorg
+            }
+            for (Block block : blocks) {
+                height++;
+                // Timestamps aren't in chain order, so heights inside the range can hold blocks stamped outside it
+                if (block.getTimeStamp() < from || block.getTimeStamp() > to) {
+                    continue;
+                }
+                Transaction transaction = parseTransactionFromBlock(block);
+                if (transaction != null) {
+                    transactions.add(transaction);
+                    if (transactions.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("transactions", transactions);
+        page.put("nextCursor", height < range[1] ? height : null);
+        return page;
+    }
+
+    // Builds a Merkle proof for the pet's latest transaction, with headers from the checkpoint to the tip
+    public static MerkleProof getOwnershipProof(String petId, String checkpoint) {
+        List<Transaction> history = getPetTransactionHistory(petId);
+        if (history.isEmpty()) {
+            throw new IllegalArgumentException("Pet with ID " + petId + " does not exist");
+        }
+        Transaction transaction = history.get(history.size() - 1);
+
+        Block block = ChainHub.getBlock(transaction.getBlockHash());
+        if (block == null || block.getMerkleRoot() == null) {
+            throw new IllegalStateException("Block " + transaction.getBlockHash() + " predates Merkle roots");
+        }
+
+        int startHeight = 0;
+        String checkpointHash = ChainHub.GENESIS_PREVIOUS_HASH;
+        if (checkpoint != null && !checkpoint.trim().isEmpty()) {
+            checkpointHash = checkpoint.trim();
+            BlockNode checkpointNode = ChainHub.getNode(checkpointHash);
+            BlockNode blockNode = ChainHub.getNode(block.hash);
+            if (checkpointNode == null || !ChainHub.isCanonical(checkpointHash)) {
+                throw new IllegalArgumentException("Checkpoint " + checkpointHash + " is not on the chain");
+            }
+            if (checkpointNode.getHeight() >= blockNode.getHeight()) {
+                throw new IllegalArgumentException("Checkpoint must be older than block " + block.hash);
+            }
+            startHeight = checkpointNode.getHeight() + 1;
+        }
+
+        List<String> transactions = block.getTransactions();
+        int index = transactions.indexOf(block.getData());
+        List<BlockHeader> headers = ChainHub.getHeadersFrom(startHeight, ChainHub.getHeight() - startHeight + 1);
+        // A header without a Merkle root can't be rehashed by the client, so the proof would never verify
+        for (BlockHeader header : headers) {
+            if (header.getMerkleRoot() == null) {
+                throw new IllegalArgumentException("Block " + header.getHash() + " at height " + header.getHeight()
+                        + " predates Merkle roots; use it or a later block as the checkpoint");
+            }
+        }
+
+        return new MerkleProof(transactions.get(index), transaction, block.hash, block.getMerkleRoot(),
+                MerkleTree.buildBranch(transactions, index), checkpointHash, headers);
+    }
+
     // Gets statistics about the blockchain system
     public static Map<String, Object> getStats() {
         Map<String, Object> stats = new HashMap<>();
         
-        // Count unique owners
-        Set<String> uniqueOwners = petRegistry.values().stream()
-                .map(Pet::getOwner)
-                .collect(Collectors.toSet());
-        
         stats.put("totalPets", petRegistry.size());
-        stats.put("totalOwners", uniqueOwners.size());
+        stats.put("totalOwners", petRegistry.ownerCount());
         stats.put("totalTransactions", getAllTransactions().size());
         stats.put("blockchainSize", ChainHub.blockChain.size());
         stats.put("difficulty", ChainHub.difficulty);
-        stats.put("blockchainValid", ChainHub.isChainValid());
+        stats.put("blockchainValid", ChainHub.isChainValidForTip());
         
         return stats;
     }
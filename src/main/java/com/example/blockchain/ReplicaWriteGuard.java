@@ -0,0 +1,46 @@
+package com.example.blockchain;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Rejects write requests when the node runs as a read-only replica.
+ * Replicas only change their chain by following the primary, so every non-GET API call
+ * except the node-to-node endpoints is answered with 403.
+ */
+@Configuration
+public class ReplicaWriteGuard implements WebMvcConfigurer, HandlerInterceptor {
+
+    private final PeerService peerService;
+
+    public ReplicaWriteGuard(PeerService peerService) {
+        this.peerService = peerService;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this)
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/p2p/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (!peerService.isReplica() || "GET".equals(request.getMethod()) || "OPTIONS".equals(request.getMethod())) {
+            return true;
+        }
+
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":\"error\",\"error\":\"This node is a read-only replica\","
+                + "\"message\":\"This node is a read-only replica\"}");
+        return false;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.blockchain;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Caches GET responses of the chain-derived read endpoints until the chain changes.
+ * Each response is tagged with an ETag made from the tip hash, so a client that sends it back in
+ * If-None-Match gets a 304 while no block has been appended. The cache is cleared when a block is
+ * connected or disconnected, and every entry also remembers the tip it was built at.
+ */
+@Component
+public class ResponseCache extends OncePerRequestFilter implements ChainListener {
+
+    // Endpoints whose responses depend only on the canonical chain
+    private static final List<String> CACHED_PATHS = List.of(
+            "/api/blockchain", "/api/stats", "/api/headers", "/api/pets/", "/api/pet/", "/api/owner/",
+            "/api/transactions");
+
+    private static class CachedResponse {
+        final String tipHash;
+        final String contentType;
+        final Map<String, String> headers;
+        final byte[] body;
+
+        CachedResponse(String tipHash, String contentType, Map<String, String> headers, byte[] body) {
+            this.tipHash = tipHash;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    private final Map<String, CachedResponse> entries;
+
+    public ResponseCache(@Value("${blockchain.response-cache.max-entries:1000}") int maxEntries) {
+        // Least recently used entries go first; history endpoints are keyed per pet and owner
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        ChainHub.addListener(this);
+    }
+
+    @Override
+    public void onBlockConnected(Block block) {
+        entries.clear();
+    }
+
+    @Override
+    public void onBlockDisconnected(Block block) {
+        entries.clear();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        return CACHED_PATHS.stream().noneMatch(path::startsWith);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Read the tip before building the response, so a block appended meanwhile only makes the tag stale
+        String tipHash = ChainHub.getTipHash();
+        String etag = "\"" + tipHash + "\"";
+        String key = cacheKey(request);
+        boolean matches = etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH));
+
+        CachedResponse entry = entries.get(key);
+        if (entry != null && entry.tipHash.equals(tipHash)) {
+            entry.headers.forEach(response::setHeader);
+            setValidators(response, etag);
+            if (matches) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setContentType(entry.contentType);
+            response.setContentLength(entry.body.length);
+            response.getOutputStream().write(entry.body);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || !tipHash.equals(ChainHub.getTipHash())) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        entries.put(key, new CachedResponse(tipHash, wrapper.getContentType(), replayedHeaders(wrapper),
+                wrapper.getContentAsByteArray()));
+        setValidators(response, etag);
+        if (matches) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    // Cross-origin requests get CORS headers from the controller, so they are cached separately
+    private static String cacheKey(HttpServletRequest request) {
+        String query = request.getQueryString();
+        String key = query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+        return request.getHeader(HttpHeaders.ORIGIN) == null ? key : key + " cors";
+    }
+
+    // Headers set by the handler that a cached copy has to repeat
+    private static Map<String, String> replayedHeaders(HttpServletResponse response) {
+        Map<String, String> headers = new HashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (name.startsWith("Access-Control-") || name.equals(HttpHeaders.VARY)) {
+                headers.put(name, String.join(", ", response.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    private static void setValidators(HttpServletResponse response, String etag) {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        // Let clients keep the body but check back every time
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+    }
+}
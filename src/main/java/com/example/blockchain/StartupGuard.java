@@ -0,0 +1,51 @@
+package com.example.blockchain;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Answers API calls with 503 until the chain and registry have loaded.
+ * Reads would see an empty chain and a write would mine on top of it, so only the
+ * readiness endpoint is served while PersistenceService is still loading, or for good if loading failed.
+ */
+@Configuration
+public class StartupGuard implements WebMvcConfigurer, HandlerInterceptor {
+
+    private final PersistenceService persistenceService;
+
+    public StartupGuard(PersistenceService persistenceService) {
+        this.persistenceService = persistenceService;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this)
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/ready");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (persistenceService.isReady() || "OPTIONS".equals(request.getMethod())) {
+            return true;
+        }
+
+        boolean failed = persistenceService.getStage() == PersistenceService.Stage.FAILED;
+        String message = failed ? "Node could not load its data files" : "Node is still loading";
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        if (!failed) {
+            response.setHeader("Retry-After", "1");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":\"error\",\"error\":\"" + message + "\","
+                + "\"message\":\"" + message + "\"}");
+        return false;
+    }
+}
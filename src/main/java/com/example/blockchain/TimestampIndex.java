@@ -0,0 +1,94 @@
+package com.example.blockchain;
+
+import java.util.Arrays;
+
+/**
+ * Block times of the canonical chain by height, for binary-searching time ranges.
+ * Timestamps come from the miner's clock and can go backwards between blocks, so the block times themselves
+ * aren't sorted. Two sorted bounds are kept instead: the latest time at or before each height, which finds
+ * the first height that can be in a range, and the earliest time at or after each height, which finds the
+ * first height past it. Blocks between the two still have to be checked against the range.
+ */
+public class TimestampIndex {
+
+    private long[] times = new long[1024];
+    private long[] latestSoFar = new long[1024];
+    private long[] earliestFrom = new long[1024];
+    private int size;
+
+    // Adds the block at the next height
+    public void append(long timeStamp) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            latestSoFar = Arrays.copyOf(latestSoFar, size * 2);
+            earliestFrom = Arrays.copyOf(earliestFrom, size * 2);
+        }
+        times[size] = timeStamp;
+        latestSoFar[size] = size == 0 ? timeStamp : Math.max(timeStamp, latestSoFar[size - 1]);
+        earliestFrom[size] = timeStamp;
+        // Only heights stamped after this block change; for blocks in time order that is none
+        for (int height = size - 1; height >= 0 && earliestFrom[height] > timeStamp; height--) {
+            earliestFrom[height] = timeStamp;
+        }
+        size++;
+    }
+
+    // Drops every height from newSize up, e.g. when blocks are disconnected in a reorg
+    public void truncate(int newSize) {
+        newSize = Math.max(0, Math.min(size, newSize));
+        // The dropped blocks may have lowered the earliest time of heights below them; recompute
+        // back from the new tip until a height's value no longer changes
+        for (int height = newSize - 1; height >= 0; height--) {
+            long earliest = height == newSize - 1 ? times[height] : Math.min(times[height], earliestFrom[height + 1]);
+            if (earliest == earliestFrom[height]) {
+                break;
+            }
+            earliestFrom[height] = earliest;
+        }
+        size = newSize;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Timestamp of the block at a height
+    public long timeAt(int height) {
+        return times[height];
+    }
+
+    // First height that can hold a block stamped at or after the given time, or size() if there is none;
+    // every block below it is stamped earlier
+    public int firstAtOrAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (latestSoFar[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First height from which every block is stamped after the given time, or size() if there is none
+    public int firstAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (earliestFrom[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -14,6 +14,9 @@ public class Transaction {
     private long timestamp;
     private String blockHash;     // Hash of the block containing this transaction
     private long blockTimestamp;  // Timestamp of the block
+    private String previousTxHash;  // For TRADE_PET: block hash of the pet's previous transaction
+    private String publicKey;       // Base64 public key of the owner (CREATE_PET) or sender (TRADE_PET)
+    private String signature;       // Base64 signature by that key
 
     // Default constructor for Gson
     public Transaction() {
@@ -44,6 +47,9 @@ public class Transaction {
     public long getTimestamp() { return timestamp; }
     public String getBlockHash() { return blockHash; }
     public long getBlockTimestamp() { return blockTimestamp; }
+    public String getPreviousTxHash() { return previousTxHash; }
+    public String getPublicKey() { return publicKey; }
+    public String getSignature() { return signature; }
 
     // Setters (for Gson deserialization)
     public void setType(String type) { this.type = type; }
@@ -55,5 +61,8 @@ public class Transaction {
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     public void setBlockHash(String blockHash) { this.blockHash = blockHash; }
     public void setBlockTimestamp(long blockTimestamp) { this.blockTimestamp = blockTimestamp; }
+    public void setPreviousTxHash(String previousTxHash) { this.previousTxHash = previousTxHash; }
+    public void setPublicKey(String publicKey) { this.publicKey = publicKey; }
+    public void setSignature(String signature) { this.signature = signature; }
 }
 
@@ -0,0 +1,269 @@
+package com.example.blockchain;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Multi-buffer SHA-256 over the Vector API: each vector lane hashes the same block header with a
+ * different nonce, so one pass tests 8 (AVX2) or 16 (AVX-512) nonces.
+ * Only use this through MiningKernel, which falls back to the scalar path when the
+ * jdk.incubator.vector module isn't present.
+ */
+class VectorSha256 {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private static final int[] INITIAL_STATE = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Hashes prefix + nonce + suffix for nonces [startNonce, startNonce + lanes()) and returns the
+     * lowest nonce whose hash has at least difficulty leading hex zeros, or -1 if none does.
+     * A batch stops at the template's largest nonce so every lane has the same message length.
+     */
+    static int searchBatch(MessageTemplate template, int startNonce, int difficulty) {
+        int count = (int) Math.min(lanes(), (long) template.maxNonce() - startNonce + 1);
+        int[][] state = hashLanes(template, startNonce, count);
+
+        VectorMask<Integer> hit = SPECIES.indexInRange(0, count);
+        int bits = 4 * difficulty;
+        for (int word = 0; bits > 0; word++, bits -= 32) {
+            int mask = bits >= 32 ? -1 : -1 << (32 - bits);
+            hit = hit.and(IntVector.fromArray(SPECIES, state[word], 0).and(mask).compare(VectorOperators.EQ, 0));
+        }
+        return hit.anyTrue() ? startNonce + hit.firstTrue() : -1;
+    }
+
+    // Returns the hex digests for nonces [startNonce, startNonce + count), used to check against the scalar path
+    static String[] digests(MessageTemplate template, int startNonce, int count) {
+        int[][] state = hashLanes(template, startNonce, count);
+        String[] hex = new String[count];
+        for (int lane = 0; lane < count; lane++) {
+            StringBuilder builder = new StringBuilder(64);
+            for (int[] word : state) {
+                String part = Integer.toHexString(word[lane]);
+                builder.append("00000000", part.length(), 8).append(part);
+            }
+            hex[lane] = builder.toString();
+        }
+        return hex;
+    }
+
+    // Final SHA-256 state per lane, in the template's scratch arrays; lanes at or past count repeat the last nonce
+    private static int[][] hashLanes(MessageTemplate template, int startNonce, int count) {
+        template.loadNonces(startNonce, count);
+
+        int[][] state = template.state;
+        for (int i = 0; i < 8; i++) {
+            Arrays.fill(state[i], template.midstate[i]);
+        }
+        for (int block = 0; block < template.words.length / 16; block++) {
+            compress(state, template.words, block * 16, template.schedule);
+        }
+        return state;
+    }
+
+    // Compresses one 16-word block per lane into state; vectors stay in locals so they can live in registers
+    private static void compress(int[][] state, int[][] words, int offset, int[][] w) {
+        for (int t = 0; t < 16; t++) {
+            IntVector.fromArray(SPECIES, words[offset + t], 0).intoArray(w[t], 0);
+        }
+        for (int t = 16; t < 64; t++) {
+            IntVector w15 = IntVector.fromArray(SPECIES, w[t - 15], 0);
+            IntVector w2 = IntVector.fromArray(SPECIES, w[t - 2], 0);
+            IntVector s0 = w15.lanewise(VectorOperators.ROR, 7)
+                    .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 18))
+                    .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+            IntVector s1 = w2.lanewise(VectorOperators.ROR, 17)
+                    .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 19))
+                    .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+            IntVector.fromArray(SPECIES, w[t - 16], 0).add(s0)
+                    .add(IntVector.fromArray(SPECIES, w[t - 7], 0)).add(s1)
+                    .intoArray(w[t], 0);
+        }
+
+        IntVector a = IntVector.fromArray(SPECIES, state[0], 0);
+        IntVector b = IntVector.fromArray(SPECIES, state[1], 0);
+        IntVector c = IntVector.fromArray(SPECIES, state[2], 0);
+        IntVector d = IntVector.fromArray(SPECIES, state[3], 0);
+        IntVector e = IntVector.fromArray(SPECIES, state[4], 0);
+        IntVector f = IntVector.fromArray(SPECIES, state[5], 0);
+        IntVector g = IntVector.fromArray(SPECIES, state[6], 0);
+        IntVector h = IntVector.fromArray(SPECIES, state[7], 0);
+        for (int t = 0; t < 64; t++) {
+            IntVector bigSigma1 = e.lanewise(VectorOperators.ROR, 6)
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+            IntVector choose = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+            IntVector temp1 = h.add(bigSigma1).add(choose).add(K[t]).add(IntVector.fromArray(SPECIES, w[t], 0));
+            IntVector bigSigma0 = a.lanewise(VectorOperators.ROR, 2)
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+            IntVector majority = a.and(b).lanewise(VectorOperators.XOR, a.and(c))
+                    .lanewise(VectorOperators.XOR, b.and(c));
+            IntVector temp2 = bigSigma0.add(majority);
+            h = g;
+            g = f;
+            f = e;
+            e = d.add(temp1);
+            d = c;
+            c = b;
+            b = a;
+            a = temp1.add(temp2);
+        }
+
+        a.add(IntVector.fromArray(SPECIES, state[0], 0)).intoArray(state[0], 0);
+        b.add(IntVector.fromArray(SPECIES, state[1], 0)).intoArray(state[1], 0);
+        c.add(IntVector.fromArray(SPECIES, state[2], 0)).intoArray(state[2], 0);
+        d.add(IntVector.fromArray(SPECIES, state[3], 0)).intoArray(state[3], 0);
+        e.add(IntVector.fromArray(SPECIES, state[4], 0)).intoArray(state[4], 0);
+        f.add(IntVector.fromArray(SPECIES, state[5], 0)).intoArray(state[5], 0);
+        g.add(IntVector.fromArray(SPECIES, state[6], 0)).intoArray(state[6], 0);
+        h.add(IntVector.fromArray(SPECIES, state[7], 0)).intoArray(state[7], 0);
+    }
+
+    /**
+     * Padded SHA-256 message for prefix + nonce + suffix with a fixed nonce length, plus the state after
+     * the blocks that come before the nonce. Those blocks are the same for every nonce, so they are hashed once.
+     */
+    static class MessageTemplate {
+        private final byte[] message;
+        private final int nonceOffset;
+        private final int nonceDigits;
+        private final int[] midstate;
+
+        // Scratch space reused between batches: per-lane message words from the nonce block on,
+        // the message schedule and the running state
+        private final int[][] words;
+        private final int[][] schedule = new int[64][lanes()];
+        private final int[][] state = new int[8][lanes()];
+
+        // Range of words in `words` that contain nonce digits; all other words are the same in every lane
+        private final int firstNonceWord;
+        private final int lastNonceWord;
+
+        MessageTemplate(String prefix, int nonceDigits, String suffix) {
+            byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+            byte[] suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+            int length = prefixBytes.length + nonceDigits + suffixBytes.length;
+            int padded = ((length + 8) / 64 + 1) * 64;
+
+            this.message = new byte[padded];
+            this.nonceOffset = prefixBytes.length;
+            this.nonceDigits = nonceDigits;
+            System.arraycopy(prefixBytes, 0, message, 0, prefixBytes.length);
+            System.arraycopy(suffixBytes, 0, message, nonceOffset + nonceDigits, suffixBytes.length);
+            message[length] = (byte) 0x80;
+            long bitLength = (long) length * 8;
+            for (int i = 0; i < 8; i++) {
+                message[padded - 1 - i] = (byte) (bitLength >>> (8 * i));
+            }
+
+            this.midstate = INITIAL_STATE.clone();
+            for (int block = 0; block < firstNonceBlock(); block++) {
+                compressScalar(midstate, message, block * 64);
+            }
+
+            int start = firstNonceBlock() * 64;
+            this.words = new int[(padded - start) / 4][lanes()];
+            for (int w = 0; w < words.length; w++) {
+                Arrays.fill(words[w], wordAt(start + w * 4));
+            }
+            this.firstNonceWord = (nonceOffset - start) / 4;
+            this.lastNonceWord = (nonceOffset + nonceDigits - 1 - start) / 4;
+        }
+
+        int firstNonceBlock() { return nonceOffset / 64; }
+
+        // Largest nonce that fits in this template's number of digits
+        int maxNonce() {
+            long limit = 1;
+            for (int i = 0; i < nonceDigits; i++) {
+                limit *= 10;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, limit - 1);
+        }
+
+        // Writes each lane's nonce digits into the words that hold them
+        void loadNonces(int startNonce, int count) {
+            int start = firstNonceBlock() * 64;
+            for (int lane = 0; lane < lanes(); lane++) {
+                int nonce = startNonce + Math.min(lane, count - 1);
+                for (int i = nonceOffset + nonceDigits - 1; i >= nonceOffset; i--) {
+                    message[i] = (byte) ('0' + nonce % 10);
+                    nonce /= 10;
+                }
+                for (int w = firstNonceWord; w <= lastNonceWord; w++) {
+                    words[w][lane] = wordAt(start + w * 4);
+                }
+            }
+        }
+
+        private int wordAt(int offset) {
+            return (message[offset] & 0xff) << 24 | (message[offset + 1] & 0xff) << 16
+                    | (message[offset + 2] & 0xff) << 8 | (message[offset + 3] & 0xff);
+        }
+    }
+
+    // Plain SHA-256 compression of one 64-byte block, for the shared midstate
+    private static void compressScalar(int[] state, byte[] message, int offset) {
+        int[] w = new int[64];
+        for (int t = 0; t < 16; t++) {
+            int i = offset + t * 4;
+            w[t] = (message[i] & 0xff) << 24 | (message[i + 1] & 0xff) << 16
+                    | (message[i + 2] & 0xff) << 8 | (message[i + 3] & 0xff);
+        }
+        for (int t = 16; t < 64; t++) {
+            int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+        for (int t = 0; t < 64; t++) {
+            int bigSigma1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int temp1 = h + bigSigma1 + ((e & f) ^ (~e & g)) + K[t] + w[t];
+            int bigSigma0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int temp2 = bigSigma0 + ((a & b) ^ (a & c) ^ (b & c));
+            h = g;
+            g = f;
+            f = e;
+            e = d + temp1;
+            d = c;
+            c = b;
+            b = a;
+            a = temp1 + temp2;
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+}
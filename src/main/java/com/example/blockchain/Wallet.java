@@ -1,28 +1,87 @@
 package com.example.blockchain;
 
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.UUID;
 
 // Wallet class for managing player addresses and pet collections
 public class Wallet {
 
+    // ECDSA over P-256 with raw r||s signatures, the format browsers produce with WebCrypto
+    public static final String KEY_ALGORITHM = "EC";
+    public static final String SIGNATURE_ALGORITHM = "SHA256withECDSAinP1363Format";
+
     private String address;
+    private String publicKey;   // Base64 X.509 (SPKI) encoding
+    private String privateKey;  // Base64 PKCS#8 encoding
     private List<Pet> pets;
 
     public Wallet() {
         /*
-        / Generate unique address from UUID
-        / Hashes it to a 64-char hex string
+        / Generate a P-256 keypair
+        / The address is derived from the public key, so only the key holder can sign for it
         */
-        this.address = StringUtil.applySha256(UUID.randomUUID().toString())
-                .substring(0, 16);
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            KeyPair keyPair = generator.generateKeyPair();
+            this.publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+            this.privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        this.address = addressOf(publicKey);
         this.pets = new ArrayList<>();
     }
 
+    // Derives the wallet address for a Base64 public key
+    public static String addressOf(String publicKey) {
+        return StringUtil.applySha256(publicKey).substring(0, 40);
+    }
+
+    // The message a pet's owner signs to trade it. previousTxHash is the block hash of the pet's
+    // latest transaction, so a signature can't be replayed once the pet has moved.
+    public static String tradeMessage(String petId, String fromOwner, String toOwner, String previousTxHash) {
+        return "TRADE_PET|" + petId + "|" + fromOwner + "|" + toOwner + "|" + previousTxHash;
+    }
+
+    // The message an owner signs to create a pet. The pet's id is derived from it (PetService.petIdFor),
+    // so the signature can't be replayed: mining it again names a pet that already exists.
+    public static String createMessage(String ownerAddress, String petName, long timestamp) {
+        return "CREATE_PET|" + ownerAddress + "|" + petName + "|" + timestamp;
+    }
+
+    // Signs a message with this wallet's private key and returns the Base64 signature
+    public String sign(String message) {
+        try {
+            PrivateKey key = KeyFactory.getInstance(KEY_ALGORITHM)
+                    .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKey)));
+            Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+            signature.initSign(key);
+            signature.update(message.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(signature.sign());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // Returns the wallet address
     public String getAddress() { return address; }
 
+    // Returns the Base64 public key
+    public String getPublicKey() { return publicKey; }
+
+    // Returns the Base64 private key
+    public String getPrivateKey() { return privateKey; }
+
     // Returns the list of pets
     public List<Pet> getPets() { return pets; }
 
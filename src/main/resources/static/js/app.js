@@ -83,14 +83,44 @@ function showTab(tabName, clickedButton) {
     }
 }
 
+// ECDSA P-256 keys; the private key never leaves the browser
+const KEY_PARAMS = { name: 'ECDSA', namedCurve: 'P-256' };
+const SIGN_PARAMS = { name: 'ECDSA', hash: 'SHA-256' };
+
+function toBase64(buffer) {
+    return btoa(String.fromCharCode(...new Uint8Array(buffer)));
+}
+
+function fromBase64(text) {
+    return Uint8Array.from(atob(text), c => c.charCodeAt(0));
+}
+
+// Signs a message with the wallet's stored private key and returns the Base64 signature
+async function signMessage(message) {
+    const privateKey = await crypto.subtle.importKey('pkcs8', fromBase64(localStorage.getItem('walletPrivateKey')),
+        KEY_PARAMS, false, ['sign']);
+    const signature = await crypto.subtle.sign(SIGN_PARAMS, privateKey, new TextEncoder().encode(message));
+    return toBase64(signature);
+}
+
 async function createWallet() {
     try {
+        const keyPair = await crypto.subtle.generateKey(KEY_PARAMS, true, ['sign', 'verify']);
+        const publicKey = toBase64(await crypto.subtle.exportKey('spki', keyPair.publicKey));
+        const privateKey = toBase64(await crypto.subtle.exportKey('pkcs8', keyPair.privateKey));
+
         const response = await fetch(API_BASE + '/wallet/create', {
-            method: 'POST'
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json'
+            },
+            body: JSON.stringify({ publicKey: publicKey })
         });
         const data = await response.json();
         currentWalletAddress = data.address;
         localStorage.setItem('walletAddress', currentWalletAddress);
+        localStorage.setItem('walletPublicKey', publicKey);
+        localStorage.setItem('walletPrivateKey', privateKey);
         displayWallet(currentWalletAddress);
         showMessage('wallet-info', 'Wallet created successfully!', 'success');
     } catch (error) {
@@ -124,10 +154,19 @@ async function createPet(event) {
         return;
     }
     
+    if (!localStorage.getItem('walletPrivateKey')) {
+        showMessage('create-result', 'This wallet has no signing key. Create a new wallet to create pets.', 'error');
+        return;
+    }
+    
     const resultDiv = document.getElementById('create-result');
     resultDiv.innerHTML = '<div class="loading">⛏️ Mining block... This may take a moment.</div>';
     
     try {
+        // The pet's ID is derived from this signed message on the server
+        const timestamp = Date.now();
+        const message = ['CREATE_PET', currentWalletAddress, petName, timestamp].join('|');
+
         const response = await fetch(API_BASE + '/pet/create', {
             method: 'POST',
             headers: {
@@ -135,7 +174,10 @@ async function createPet(event) {
             },
             body: JSON.stringify({
                 ownerAddress: currentWalletAddress,
-                petName: petName
+                petName: petName,
+                timestamp: String(timestamp),
+                publicKey: localStorage.getItem('walletPublicKey'),
+                signature: await signMessage(message)
             })
         });
         
@@ -238,10 +280,25 @@ async function tradePet(event) {
         return;
     }
     
+    if (!localStorage.getItem('walletPrivateKey')) {
+        showMessage('trade-result', 'This wallet has no signing key. Create a new wallet to trade.', 'error');
+        return;
+    }
+    
     const resultDiv = document.getElementById('trade-result');
     resultDiv.innerHTML = '<div class="loading">⛏️ Processing trade... Mining block...</div>';
     
     try {
+        // Sign the trade against the pet's latest transaction so the signature can't be replayed
+        const historyResponse = await fetch(API_BASE + '/pet/' + petId + '/history');
+        const history = await historyResponse.json();
+        if (!history.length) {
+            showMessage('trade-result', '❌ Error: Pet with ID ' + petId + ' does not exist', 'error');
+            return;
+        }
+        const previousTxHash = history[history.length - 1].blockHash;
+        const message = ['TRADE_PET', petId, currentWalletAddress, toOwner, previousTxHash].join('|');
+
         const response = await fetch(API_BASE + '/pet/trade', {
             method: 'POST',
             headers: {
@@ -250,7 +307,10 @@ async function tradePet(event) {
             body: JSON.stringify({
                 petId: petId,
                 fromOwner: currentWalletAddress,
-                toOwner: toOwner
+                toOwner: toOwner,
+                previousTxHash: previousTxHash,
+                publicKey: localStorage.getItem('walletPublicKey'),
+                signature: await signMessage(message)
             })
         });
         
@@ -365,11 +425,43 @@ async function loadStats() {
                 </div>
             </div>
         `;
+        loadRecentBlocks(stats.blockchainSize);
     } catch (error) {
         statsDiv.innerHTML = '<div class="message error">Error loading stats: ' + error.message + '</div>';
     }
 }
 
+// Shows the latest block headers; uses /headers so block payloads aren't downloaded
+async function loadRecentBlocks(chainSize) {
+    const blocksDiv = document.getElementById('recent-blocks');
+    const count = 10;
+    const from = Math.max(0, chainSize - count);
+    
+    try {
+        const response = await fetch(API_BASE + '/headers?from=' + from + '&limit=' + count);
+        const page = await response.json();
+        
+        if (page.headers.length === 0) {
+            blocksDiv.innerHTML = '<p>No blocks yet.</p>';
+            return;
+        }
+        
+        blocksDiv.innerHTML = page.headers.slice().reverse().map(header => `
+            <div class="transaction-item">
+                <div class="tx-type">⛓️ Block #${header.height}</div>
+                <div class="tx-details">
+                    <strong>Hash:</strong> ${header.hash.substring(0, 16)}...<br>
+                    <strong>Previous:</strong> ${header.previousHash.substring(0, 16)}${header.previousHash.length > 16 ? '...' : ''}<br>
+                    <strong>Nonce:</strong> ${header.nonce}<br>
+                    <strong>Time:</strong> ${new Date(header.timeStamp).toLocaleString()}
+                </div>
+            </div>
+        `).join('');
+    } catch (error) {
+        blocksDiv.innerHTML = '<div class="message error">Error loading blocks: ' + error.message + '</div>';
+    }
+}
+
 function showMessage(containerId, message, type) {
     const container = document.getElementById(containerId);
     container.innerHTML = `<div class="message ${type}">${message}</div>`;
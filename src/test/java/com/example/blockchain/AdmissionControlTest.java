@@ -0,0 +1,40 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+
+    @Test
+    void testOwnerIsRateLimitedAfterBurst() {
+        AdmissionControl admission = new AdmissionControl(10, 2, 1);
+
+        assertEquals(AdmissionControl.Result.ADMITTED, admission.tryAdmit("alice"));
+        admission.release();
+        assertEquals(AdmissionControl.Result.ADMITTED, admission.tryAdmit("alice"));
+        admission.release();
+        assertEquals(AdmissionControl.Result.RATE_LIMITED, admission.tryAdmit("alice"));
+
+        // Other owners have their own bucket
+        assertEquals(AdmissionControl.Result.ADMITTED, admission.tryAdmit("bob"));
+        admission.release();
+    }
+
+    @Test
+    void testPendingWorkIsBounded() {
+        AdmissionControl admission = new AdmissionControl(2, 100, 60);
+
+        assertEquals(AdmissionControl.Result.ADMITTED, admission.tryAdmit("a"));
+        assertEquals(AdmissionControl.Result.ADMITTED, admission.tryAdmit("b"));
+        assertEquals(AdmissionControl.Result.OVERLOADED, admission.tryAdmit("c"));
+
+        admission.release();
+        assertEquals(AdmissionControl.Result.ADMITTED, admission.tryAdmit("c"));
+
+        Map<String, Object> stats = admission.getStats();
+        assertEquals(2, stats.get("pending"));
+        assertEquals(3L, stats.get("admitted"));
+        assertEquals(1L, stats.get("rejectedOverloaded"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockStoreTest {
+
+    @TempDir
+    Path dir;
+
+    // Linked blocks; the store doesn't check proof of work, so they aren't mined
+    private static List<Block> chain(String label, String previous, int count) {
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Block block = new Block(label + " " + i, previous);
+            blocks.add(block);
+            previous = block.hash;
+        }
+        return blocks;
+    }
+
+    @Test
+    void testSealedBlocksReadBackAndUnsealOnRemove() throws Exception {
+        List<Block> blocks = chain("Block", ChainHub.GENESIS_PREVIOUS_HASH, 12);
+        BlockStore store = new BlockStore();
+        store.addAll(blocks);
+
+        assertEquals(8, store.seal(dir, 2, 4));
+        assertEquals(8, store.sealedSize());
+        assertEquals(4, store.getHotBlocks().size());
+        for (int i = 0; i < blocks.size(); i++) {
+            assertEquals(blocks.get(i).hash, store.get(i).hash);
+            assertEquals("Block " + i, store.get(i).getData());
+        }
+        assertEquals(blocks.get(5).hash, store.getSealedHeader(5).getHash());
+
+        // Removing past the hot tier pulls the newest segment back into memory
+        for (int i = 0; i < 5; i++) {
+            store.remove(store.size() - 1);
+        }
+        assertEquals(7, store.size());
+        assertEquals(4, store.sealedSize());
+        assertEquals(blocks.get(6).hash, store.get(6).hash);
+
+        store.deleteStaleSegments(dir);
+        assertEquals(1, Files.list(dir).count());
+    }
+
+    @Test
+    void testSnapshotKeepsItsBlocksWhileTheStoreChanges() throws Exception {
+        List<Block> blocks = chain("Block", ChainHub.GENESIS_PREVIOUS_HASH, 10);
+        BlockStore store = new BlockStore();
+        store.addAll(blocks);
+        store.seal(dir, 2, 4);
+        List<Block> snapshot = store.snapshot();
+
+        // Appends and removals, including one that unseals a segment, leave the snapshot as it was
+        store.addAll(chain("Later", blocks.get(9).hash, 3));
+        for (int i = 0; i < 6; i++) {
+            store.remove(store.size() - 1);
+        }
+        assertEquals(4, store.sealedSize());
+
+        assertEquals(10, snapshot.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            assertEquals(blocks.get(i).hash, snapshot.get(i).hash);
+        }
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(blocks.get(0)));
+    }
+
+    @Test
+    void testRestorePlacesSavedBlocksAfterTheSegments() throws Exception {
+        List<Block> blocks = chain("Block", ChainHub.GENESIS_PREVIOUS_HASH, 10);
+        BlockStore store = new BlockStore();
+        store.addAll(blocks);
+        store.seal(dir, 2, 4);
+
+        // Saved blocks that overlap the segments, as after a save interrupted right after sealing
+        BlockStore restored = new BlockStore();
+        restored.restore(BlockSegment.openAll(dir), blocks.subList(6, 10));
+        assertEquals(10, restored.size());
+        assertEquals(8, restored.sealedSize());
+
+        // Saved blocks that fork off inside a segment replace the sealed blocks from the fork on
+        List<Block> fork = chain("Fork", blocks.get(5).hash, 3);
+        restored.restore(BlockSegment.openAll(dir), fork);
+        assertEquals(9, restored.size());
+        assertEquals(4, restored.sealedSize());
+        assertEquals(blocks.get(5).hash, restored.get(5).hash);
+        assertEquals(fork.get(2).hash, restored.get(8).hash);
+
+        assertThrows(Exception.class, () -> new BlockStore().restore(BlockSegment.openAll(dir),
+                chain("Stray", "unknown", 1)));
+    }
+
+    @Test
+    void testSegmentsWrittenBeforeAReorgAreNotInstalled() throws Exception {
+        List<Block> blocks = chain("Block", ChainHub.GENESIS_PREVIOUS_HASH, 10);
+        BlockStore store = new BlockStore();
+        store.addAll(blocks);
+
+        // Written from a copy, as a save does outside the chain lock
+        List<BlockSegment> written = BlockStore.writeSegments(dir, store.sealedSize(), store.sealableRuns(2, 4),
+                store.getUnsealedFiles());
+        assertEquals(2, written.size());
+        assertEquals(10, store.getHotBlocks().size());
+
+        // A reorg replaces heights 6.. before the segments are installed: the first still matches, the second doesn't
+        while (store.size() > 6) {
+            store.remove(store.size() - 1);
+        }
+        store.addAll(chain("Fork", blocks.get(5).hash, 4));
+        assertEquals(4, store.install(written));
+        assertEquals(4, store.sealedSize());
+        assertEquals("Fork 0", store.get(6).getData());
+        assertEquals("Block 2", store.get(2).getData());
+    }
+}
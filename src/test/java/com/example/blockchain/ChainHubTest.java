@@ -2,14 +2,20 @@ package com.example.blockchain;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.Gson;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class ChainHubTest {
 
     @BeforeEach
     void setUp() {
-        // Clear blockchain before each test
-        ChainHub.blockChain.clear();
+        // Clear blockchain and block tree before each test
+        ChainHub.reset();
         ChainHub.difficulty = 2; // Lower difficulty for faster tests
     }
 
@@ -62,6 +68,239 @@ public class ChainHubTest {
         assertFalse(ChainHub.isChainValid(), 
                     "A chain with tampered data should be invalid");
     }
-}
 
+    private Block mined(String data, String previousHash) {
+        Block block = new Block(data, previousHash);
+        block.mineBlock(ChainHub.difficulty);
+        return block;
+    }
+
+    // A block as mined before Merkle roots: the hash covers the data directly
+    private Block minedWithoutMerkleRoot(String data, String previousHash) {
+        Block block = new Block(data, previousHash);
+        block.setMerkleRoot(null);
+        block.setHash(block.calculateHash());
+        block.mineBlock(ChainHub.difficulty);
+        return block;
+    }
+
+    private Block minedAt(String data, String previousHash, long timeStamp) {
+        Block block = new Block(data, previousHash);
+        block.setTimeStamp(timeStamp);
+        block.setHash(block.calculateHash());
+        block.mineBlock(ChainHub.difficulty);
+        return block;
+    }
+
+    @Test
+    void testAddBlockExtendsTip() {
+        Block genesis = mined("Genesis", "0");
+        Block second = mined("Second", genesis.hash);
+
+        assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(genesis));
+        assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(second));
+        assertEquals(ChainHub.AddResult.DUPLICATE, ChainHub.addBlock(second));
+        assertEquals(2, ChainHub.blockChain.size());
+        assertEquals(second.hash, ChainHub.getTipHash());
+        assertTrue(ChainHub.isChainValid());
+    }
+
+    @Test
+    void testOrphanAndInvalidBlocksAreRejected() {
+        ChainHub.addBlock(mined("Genesis", "0"));
+
+        assertEquals(ChainHub.AddResult.ORPHAN, ChainHub.addBlock(mined("Orphan", "unknown")));
+
+        Block tampered = mined("Tampered", ChainHub.getTipHash());
+        tampered.setData("Changed after mining");
+        assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(tampered));
+        assertEquals(1, ChainHub.blockChain.size());
+    }
+
+    @Test
+    void testHeavierForkTriggersReorg() {
+        Block genesis = mined("Genesis", "0");
+        Block a1 = mined("A1", genesis.hash);
+        Block b1 = mined("B1", genesis.hash);
+        Block b2 = mined("B2", b1.hash);
+        ChainHub.addBlock(genesis);
+        ChainHub.addBlock(a1);
+
+        // Equal work keeps the current chain
+        assertEquals(ChainHub.AddResult.SIDE_BRANCH, ChainHub.addBlock(b1));
+        assertEquals(a1.hash, ChainHub.getTipHash());
+
+        // More work switches to the fork
+        assertEquals(ChainHub.AddResult.REORGANIZED, ChainHub.addBlock(b2));
+        assertEquals(3, ChainHub.blockChain.size());
+        assertEquals(b1.hash, ChainHub.blockChain.get(1).hash);
+        assertEquals(b2.hash, ChainHub.getTipHash());
+        assertTrue(ChainHub.isChainValid());
+    }
+
+    @Test
+    void testReorgRollsPetOwnershipBackAndForward() {
+        Gson gson = new Gson();
+        PetService.getAllPets(); // registers the registry listener
+
+        Wallet alice = new Wallet();
+        String petId = PetService.petIdFor(alice.getAddress(), "Rex", 1L);
+        Block genesis = mined(PetService.createTransactionData(alice, "Rex", 1L), "0");
+        String signature = alice.sign(Wallet.tradeMessage(petId, alice.getAddress(), "bob", genesis.hash));
+        Block trade = mined(gson.toJson(Map.of("type", "TRADE_PET", "petId", petId,
+                "fromOwner", alice.getAddress(), "toOwner", "bob", "previousTxHash", genesis.hash,
+                "publicKey", alice.getPublicKey(), "signature", signature, "timestamp", 2L)), genesis.hash);
+        ChainHub.addBlock(genesis);
+        assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(trade));
+        assertEquals("bob", PetService.getPetById(petId).getOwner());
+
+        // A heavier fork without the trade hands the pet back to alice
+        Block other1 = mined("Other 1", genesis.hash);
+        Block other2 = mined("Other 2", other1.hash);
+        ChainHub.addBlock(other1);
+        ChainHub.addBlock(other2);
+        assertEquals(alice.getAddress(), PetService.getPetById(petId).getOwner());
+
+        // Extending the original branch past the fork reapplies the trade
+        Block trade2 = mined("Trade 2", trade.hash);
+        Block trade3 = mined("Trade 3", trade2.hash);
+        ChainHub.addBlock(trade2);
+        assertEquals(ChainHub.AddResult.REORGANIZED, ChainHub.addBlock(trade3));
+        assertEquals("bob", PetService.getPetById(petId).getOwner());
+    }
+
+    @Test
+    void testRevertRestoresTimestampAndDuplicateCreateIsRejected() {
+        Gson gson = new Gson();
+        PetService.getAllPets(); // registers the registry listener
+
+        Wallet alice = new Wallet();
+        String petId = PetService.petIdFor(alice.getAddress(), "Rex", 1L);
+        String create = PetService.createTransactionData(alice, "Rex", 1L);
+        Block genesis = minedAt(create, "0", 1000);
+        String signature = alice.sign(Wallet.tradeMessage(petId, alice.getAddress(), "bob", genesis.hash));
+        Block trade = minedAt(gson.toJson(Map.of("type", "TRADE_PET", "petId", petId,
+                "fromOwner", alice.getAddress(), "toOwner", "bob", "previousTxHash", genesis.hash,
+                "publicKey", alice.getPublicKey(), "signature", signature, "timestamp", 2L)), genesis.hash, 2000);
+        ChainHub.addBlock(genesis);
+        ChainHub.addBlock(trade);
+        assertEquals(2000, PetService.getPetById(petId).getTimeStamp());
+
+        // Reverting the trade puts back the time of the pet's previous transaction
+        Block other1 = minedAt("Other 1", genesis.hash, 3000);
+        Block other2 = minedAt("Other 2", other1.hash, 4000);
+        ChainHub.addBlock(other1);
+        assertEquals(ChainHub.AddResult.REORGANIZED, ChainHub.addBlock(other2));
+        assertEquals(1000, PetService.getPetById(petId).getTimeStamp());
+
+        // Mining the signed create again is rejected on the tip...
+        String createAgain = create;
+        assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(mined(createAgain, other2.hash)));
+
+        // ...and on a heavier branch, which is dropped while the current chain stays
+        Block fork1 = mined(createAgain, other1.hash);
+        Block fork2 = mined("Fork 2", fork1.hash);
+        assertEquals(ChainHub.AddResult.SIDE_BRANCH, ChainHub.addBlock(fork1));
+        assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(fork2));
+        assertEquals(other2.hash, ChainHub.getTipHash());
+        assertNull(ChainHub.getNode(fork1.hash));
+        assertEquals(ChainHub.AddResult.ORPHAN, ChainHub.addBlock(mined("Fork 3", fork2.hash)));
+
+        Pet pet = PetService.getPetById(petId);
+        assertEquals("Rex", pet.getName());
+        assertEquals(alice.getAddress(), pet.getOwner());
+        assertEquals(1000, pet.getTimeStamp());
+        assertTrue(ChainHub.isChainValid());
+    }
 
+    @Test
+    void testValidityIsRecomputedOnlyWhenTipChanges() {
+        Block genesis = mined("Genesis", "0");
+        Block second = mined("Second", genesis.hash);
+        ChainHub.addBlock(genesis);
+        ChainHub.addBlock(second);
+        assertTrue(ChainHub.isChainValidForTip());
+
+        // Same tip, so the earlier result stands; the next block triggers a fresh check
+        ChainHub.blockChain.get(1).setData("Tampered data");
+        assertTrue(ChainHub.isChainValidForTip());
+        assertFalse(ChainHub.isChainValid());
+        ChainHub.addBlock(mined("Third", second.hash));
+        assertFalse(ChainHub.isChainValidForTip());
+    }
+
+    @Test
+    void testHeaderChainFollowsReorg() {
+        Block genesis = mined("Genesis", "0");
+        Block a1 = mined("A1", genesis.hash);
+        Block b1 = mined("B1", genesis.hash);
+        Block b2 = mined("B2", b1.hash);
+        ChainHub.addBlock(genesis);
+        ChainHub.addBlock(a1);
+        ChainHub.addBlock(b1);
+        ChainHub.addBlock(b2);
+
+        List<BlockHeader> headers = ChainHub.getHeadersFrom(0, 10);
+        assertEquals(3, headers.size());
+        assertEquals(b1.hash, headers.get(1).getHash());
+        assertEquals(2, headers.get(2).getHeight());
+        assertEquals(1, ChainHub.getHeadersFrom(2, 10).size());
+        assertTrue(ChainHub.getHeadersFrom(3, 10).isEmpty());
+        assertTrue(ChainHub.isHeaderChainValid());
+    }
+
+    @Test
+    void testLocatorFindsTheForkPoint() {
+        Block previous = mined("Block 0", "0");
+        ChainHub.addBlock(previous);
+        for (int i = 1; i < 15; i++) {
+            previous = mined("Block " + i, previous.hash);
+            ChainHub.addBlock(previous);
+        }
+
+        // The newest ten, then every other, then genesis
+        List<String> locator = ChainHub.getLocator();
+        assertEquals(12, locator.size());
+        assertEquals(ChainHub.getTipHash(), locator.get(0));
+        assertEquals(ChainHub.blockChain.get(5).hash, locator.get(9));
+        assertEquals(ChainHub.blockChain.get(3).hash, locator.get(10));
+        assertEquals(ChainHub.blockChain.get(0).hash, locator.get(11));
+
+        // A side block the caller has is skipped; headers start after the first of its hashes we share
+        Block side = mined("Side", ChainHub.blockChain.get(7).hash);
+        ChainHub.addBlock(side);
+        List<BlockHeader> headers = ChainHub.getHeadersAfter(
+                List.of(side.hash, ChainHub.blockChain.get(7).hash, ChainHub.blockChain.get(0).hash), 3);
+        assertEquals(3, headers.size());
+        assertEquals(8, headers.get(0).getHeight());
+        assertEquals(ChainHub.blockChain.get(7).hash, headers.get(0).getPreviousHash());
+
+        assertTrue(ChainHub.getHeadersAfter(List.of(ChainHub.getTipHash()), 10).isEmpty());
+        assertEquals(0, ChainHub.getHeadersAfter(List.of("unknown"), 10).get(0).getHeight());
+    }
+
+    @Test
+    void testBlocksWithoutMerkleRootOnlyBelowLegacyHeight(@TempDir Path dataDir) throws Exception {
+        // Leaving out the Merkle root doesn't get a new block past the signature and transaction checks
+        assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(minedWithoutMerkleRoot("Genesis", "0")));
+
+        Block genesis = minedWithoutMerkleRoot("Genesis", "0");
+        Block second = minedWithoutMerkleRoot("Second", genesis.hash);
+        Files.writeString(dataDir.resolve("blockchain.json"), new Gson().toJson(List.of(genesis, second)));
+        try {
+            ChainHub.setDataDirectory(dataDir.toString());
+            ChainHub.loadBlockchain();
+
+            assertEquals(2, ChainHub.getLegacyHeight());
+            assertTrue(ChainHub.isChainValid());
+            assertTrue(ChainHub.isHeaderChainValid());
+            assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(minedWithoutMerkleRoot("Third", second.hash)));
+            assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(mined("Third", second.hash)));
+
+            ChainHub.blockChain.add(minedWithoutMerkleRoot("Fourth", ChainHub.getTipHash()));
+            assertFalse(ChainHub.isChainValid());
+        } finally {
+            ChainHub.setDataDirectory("");
+        }
+    }
+}
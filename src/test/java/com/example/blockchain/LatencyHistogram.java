@@ -0,0 +1,100 @@
+package com.example.blockchain;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency histogram in microseconds, bucketed the way HdrHistogram does it: exact below 128,
+ * then 64 linear sub-buckets per power of two, so any recorded value is reported within 1.6%.
+ * Used by LoadHarnessTest; prints a percentile distribution in HdrHistogram's output format.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private static final double[] REPORTED_PERCENTILES = {
+            0, 50, 75, 90, 95, 99, 99.9, 99.99, 100
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketOf(long value) {
+        int highestBit = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, highestBit - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // Highest value that falls in a bucket, which is what percentiles report
+    static long highestValueIn(int bucket) {
+        int shift = bucket < 2 * SUB_BUCKETS ? 0 : (bucket >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = bucket - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(bucketOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getTotalCount() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    // Smallest recorded value (to bucket precision) that the given percentage of values are at or below
+    public long getValueAtPercentile(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= target) {
+                return Math.min(highestValueIn(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Prints the distribution in milliseconds, in the layout of HdrHistogram's outputPercentileDistribution
+    public void printPercentileDistribution(PrintStream out) {
+        long count = total.get();
+        out.printf("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        for (double percentile : REPORTED_PERCENTILES) {
+            long value = getValueAtPercentile(percentile);
+            long atOrBelow = countAtOrBelow(value);
+            String inverse = percentile >= 100 ? "" : String.format("%14.2f", 1 / (1 - percentile / 100));
+            out.printf("%12.3f %14.12f %10d %s%n", value / 1000.0, percentile / 100, atOrBelow, inverse);
+        }
+        out.printf("#[Mean    = %12.3f, Max     = %12.3f]%n", getMean() / 1000.0, getMax() / 1000.0);
+        out.printf("#[Total count    = %12d]%n", count);
+    }
+
+    private long countAtOrBelow(long value) {
+        long seen = 0;
+        int last = bucketOf(value);
+        for (int bucket = 0; bucket <= last; bucket++) {
+            seen += counts.get(bucket);
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100_000, histogram.getTotalCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000.5, histogram.getMean(), 0.001);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(100_000, histogram.getValueAtPercentile(100));
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double exact = percentile * 1000;
+            assertEquals(exact, histogram.getValueAtPercentile(percentile), exact / 64, "p" + percentile);
+        }
+    }
+
+    @Test
+    void testBucketsCoverEveryValueInOrder() {
+        long previousHighest = -1;
+        for (int bucket = 0; bucket < 2000; bucket++) {
+            long highest = LatencyHistogram.highestValueIn(bucket);
+            assertTrue(highest > previousHighest);
+            assertEquals(bucket, LatencyHistogram.bucketOf(highest));
+            assertEquals(bucket, LatencyHistogram.bucketOf(previousHighest + 1));
+            previousHighest = highest;
+        }
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(127, LatencyHistogram.bucketOf(127));
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load and soak run against an embedded node on localhost.
+ * Clients create wallets and pets, trade pets between random owners with real signatures, and read
+ * history, search and stats at a read-heavy mix. Afterwards it reports throughput and latency
+ * percentiles per endpoint, then checks that the chain is valid and that the pet registry, the
+ * ownership replayed from the chain and the ownership the clients expect all agree.
+ *
+ * Skipped unless load.seconds is set. Run it on its own, since it shares the static chain:
+ *   mvn test -Dtest=LoadHarnessTest -Dload.seconds=60 [-Dload.clients=16] [-Dload.difficulty=2]
+ */
+@EnabledIfSystemProperty(named = "load.seconds", matches = "\\d+")
+public class LoadHarnessTest {
+
+    // Relative frequency of each operation; reads dominate, as they do for the frontend
+    private enum Operation {
+        CREATE_WALLET("POST /api/wallet/create", 3),
+        CREATE_PET("POST /api/pet/create", 8),
+        TRADE_PET("POST /api/pet/trade", 8),
+        GET_PET("GET /api/pet/{id}", 15),
+        PET_HISTORY("GET /api/pet/{id}/history", 12),
+        OWNER_PETS("GET /api/pets/owner/{address}", 15),
+        OWNER_HISTORY("GET /api/owner/{address}/transactions", 8),
+        SEARCH("GET /api/pets/search", 12),
+        TRANSACTIONS("GET /api/transactions", 8),
+        STATS("GET /api/stats", 6),
+        HEADERS("GET /api/headers", 5);
+
+        final String label;
+        final int weight;
+
+        Operation(String label, int weight) {
+            this.label = label;
+            this.weight = weight;
+        }
+    }
+
+    // Per-endpoint latencies and outcomes
+    private static class Endpoint {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();  // 429/503 from admission control, expected under load
+        final AtomicLong failed = new AtomicLong();
+    }
+
+    // A pet as the clients believe it to be; the lock keeps two clients from trading it at once
+    private static class PetState {
+        final String id;
+        volatile Wallet owner;
+        final ReentrantLock lock = new ReentrantLock();
+
+        PetState(String id, Wallet owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+    }
+
+    private static final String[] TYPES = {"Dragon", "Cat", "Dog", "Bird", "Fish"};
+    private static final String[] COLORS = {"Red", "Blue", "Green", "Gold", "Black"};
+
+    private final Gson gson = new Gson();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final Map<Operation, Endpoint> endpoints = new EnumMap<>(Operation.class);
+    private final List<Wallet> wallets = new CopyOnWriteArrayList<>();
+    private final List<PetState> pets = new CopyOnWriteArrayList<>();
+    private final AtomicLong unexpected = new AtomicLong();
+    private String baseUrl;
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void runLoad() throws Exception {
+        int seconds = Integer.getInteger("load.seconds");
+        int clients = Integer.getInteger("load.clients", 16);
+        int reportSeconds = Integer.getInteger("load.report-seconds", 10);
+        for (Operation operation : Operation.values()) {
+            endpoints.put(operation, new Endpoint());
+        }
+
+        ChainHub.reset();
+        ChainHub.difficulty = Integer.getInteger("load.difficulty", 2);
+        // Generous per-owner limits so the run measures the node rather than the rate limiter;
+        // the pending-work bound stays at its default and its 503s are counted as rejections
+        ConfigurableApplicationContext context = SpringApplication.run(BlockchainApplication.class,
+                "--server.port=0",
+                "--blockchain.data-dir=" + dataDir,
+                "--blockchain.admission.owner-burst=100000",
+                "--blockchain.admission.owner-rate-per-minute=1000000");
+        try {
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            awaitReady();
+            seed(clients);
+
+            System.out.printf("Load: %d clients for %d s against %s at difficulty %d%n",
+                    clients, seconds, baseUrl, ChainHub.difficulty);
+            long started = System.nanoTime();
+            long deadline = started + TimeUnit.SECONDS.toNanos(seconds);
+            ExecutorService pool = Executors.newFixedThreadPool(clients);
+            for (int i = 0; i < clients; i++) {
+                pool.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        runOnce(pick());
+                    }
+                    return null;
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(reportSeconds, TimeUnit.SECONDS)) {
+                reportProgress(started);
+            }
+            double elapsed = (System.nanoTime() - started) / 1e9;
+
+            report(elapsed);
+            List<String> problems = checkConsistency();
+            problems.forEach(problem -> System.out.println("DIVERGENCE: " + problem));
+            System.out.println(problems.isEmpty() ? "Consistency: OK" : "Consistency: " + problems.size() + " problem(s)");
+            assertTrue(problems.isEmpty(), "Chain, registry and client state disagree; see output");
+            assertEquals(0, unexpected.get(), "Requests failed unexpectedly; see output");
+        } finally {
+            context.close();
+        }
+    }
+
+    private Operation pick() {
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            total += operation.weight;
+        }
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Operation operation : Operation.values()) {
+            roll -= operation.weight;
+            if (roll < 0) {
+                return operation;
+            }
+        }
+        return Operation.STATS;
+    }
+
+    private <T> T random(List<T> items) {
+        return items.get(ThreadLocalRandom.current().nextInt(items.size()));
+    }
+
+    private void awaitReady() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            if (send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/ready")).build()).statusCode() == 200) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("Node did not become ready");
+    }
+
+    // Enough wallets and pets that the first reads and trades have something to work on
+    private void seed(int clients) throws Exception {
+        for (int i = 0; i < clients; i++) {
+            runOnce(Operation.CREATE_WALLET);
+        }
+        for (int i = 0; i < clients; i++) {
+            runOnce(Operation.CREATE_PET);
+        }
+        endpoints.replaceAll((operation, endpoint) -> new Endpoint());
+    }
+
+    private void runOnce(Operation operation) {
+        try {
+            switch (operation) {
+                case CREATE_WALLET -> createWallet();
+                case CREATE_PET -> createPet();
+                case TRADE_PET -> tradePet();
+                case GET_PET -> get(operation, "/api/pet/" + random(pets).id);
+                case PET_HISTORY -> get(operation, "/api/pet/" + random(pets).id + "/history");
+                case OWNER_PETS -> get(operation, "/api/pets/owner/" + random(wallets).getAddress());
+                case OWNER_HISTORY -> get(operation, "/api/owner/" + random(wallets).getAddress() + "/transactions");
+                case SEARCH -> get(operation, "/api/pets/search?type=" + random(List.of(TYPES))
+                        + "&color=" + random(List.of(COLORS)) + "&sort=rarity&order=desc&size=20");
+                case TRANSACTIONS -> {
+                    long from = System.currentTimeMillis() - ThreadLocalRandom.current().nextLong(60_000);
+                    get(operation, "/api/transactions?from=" + from + "&limit=100");
+                }
+                case STATS -> get(operation, "/api/stats");
+                case HEADERS -> get(operation, "/api/headers?from="
+                        + ThreadLocalRandom.current().nextInt(Math.max(1, ChainHub.getHeight() + 1)) + "&limit=100");
+            }
+        } catch (Exception e) {
+            endpoints.get(operation).failed.incrementAndGet();
+            unexpected.incrementAndGet();
+            System.out.println(operation.label + " threw " + e);
+        }
+    }
+
+    private void createWallet() throws Exception {
+        // The key stays on the client, as in the browser; the node only derives the address
+        Wallet wallet = new Wallet();
+        JsonObject body = new JsonObject();
+        body.addProperty("publicKey", wallet.getPublicKey());
+        HttpResponse<String> response = post(Operation.CREATE_WALLET, "/api/wallet/create", body);
+        if (response.statusCode() == 200) {
+            wallets.add(wallet);
+        }
+    }
+
+    private void createPet() throws Exception {
+        Wallet owner = random(wallets);
+        JsonObject body = new JsonObject();
+        String petName = "Pet " + ThreadLocalRandom.current().nextInt(1_000_000);
+        long timestamp = System.currentTimeMillis();
+        body.addProperty("ownerAddress", owner.getAddress());
+        body.addProperty("petName", petName);
+        body.addProperty("timestamp", timestamp);
+        body.addProperty("publicKey", owner.getPublicKey());
+        body.addProperty("signature", owner.sign(Wallet.createMessage(owner.getAddress(), petName, timestamp)));
+        HttpResponse<String> response = post(Operation.CREATE_PET, "/api/pet/create", body);
+        if (response.statusCode() == 200) {
+            Pet pet = gson.fromJson(response.body(), Pet.class);
+            pets.add(new PetState(pet.getId(), owner));
+        }
+    }
+
+    private void tradePet() throws Exception {
+        PetState pet = random(pets);
+        if (!pet.lock.tryLock()) {
+            return;  // another client is trading it; skipping keeps the expected owner exact
+        }
+        try {
+            Wallet from = pet.owner;
+            Wallet to = random(wallets);
+            if (to == from) {
+                return;  // trading to yourself is rejected by design, so it isn't useful load
+            }
+            HttpResponse<String> history = send(HttpRequest.newBuilder(
+                    URI.create(baseUrl + "/api/pet/" + pet.id + "/history")).build());
+            JsonArray transactions = gson.fromJson(history.body(), JsonArray.class);
+            String previousTxHash = transactions.get(transactions.size() - 1)
+                    .getAsJsonObject().get("blockHash").getAsString();
+
+            JsonObject body = new JsonObject();
+            body.addProperty("petId", pet.id);
+            body.addProperty("fromOwner", from.getAddress());
+            body.addProperty("toOwner", to.getAddress());
+            body.addProperty("previousTxHash", previousTxHash);
+            body.addProperty("publicKey", from.getPublicKey());
+            body.addProperty("signature",
+                    from.sign(Wallet.tradeMessage(pet.id, from.getAddress(), to.getAddress(), previousTxHash)));
+            HttpResponse<String> response = post(Operation.TRADE_PET, "/api/pet/trade", body);
+            if (response.statusCode() == 200) {
+                pet.owner = to;
+            }
+        } finally {
+            pet.lock.unlock();
+        }
+    }
+
+    private HttpResponse<String> post(Operation operation, String path, JsonObject body) throws Exception {
+        return timed(operation, HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+                .build());
+    }
+
+    private HttpResponse<String> get(Operation operation, String path) throws Exception {
+        return timed(operation, HttpRequest.newBuilder(URI.create(baseUrl + path)).build());
+    }
+
+    private HttpResponse<String> timed(Operation operation, HttpRequest request) throws Exception {
+        Endpoint endpoint = endpoints.get(operation);
+        long started = System.nanoTime();
+        HttpResponse<String> response = send(request);
+        endpoint.latency.record((System.nanoTime() - started) / 1000);
+
+        int status = response.statusCode();
+        if (status / 100 == 2) {
+            endpoint.ok.incrementAndGet();
+        } else if (status == 429 || status == 503) {
+            endpoint.rejected.incrementAndGet();
+        } else {
+            endpoint.failed.incrementAndGet();
+            unexpected.incrementAndGet();
+            System.out.println(operation.label + " " + request.uri().getPath() + " -> " + status + " " + response.body());
+        }
+        return response;
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void reportProgress(long started) {
+        long requests = 0;
+        long rejected = 0;
+        long failed = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            requests += endpoint.latency.getTotalCount();
+            rejected += endpoint.rejected.get();
+            failed += endpoint.failed.get();
+        }
+        System.out.printf("[%4.0f s] requests=%d rejected=%d failed=%d height=%d pets=%d wallets=%d%n",
+                (System.nanoTime() - started) / 1e9, requests, rejected, failed,
+                ChainHub.getHeight(), pets.size(), wallets.size());
+    }
+
+    private void report(double elapsed) {
+        System.out.printf("%nRan %.1f s; chain height %d, %d pets, %d wallets%n%n",
+                elapsed, ChainHub.getHeight(), pets.size(), wallets.size());
+        System.out.printf("%-40s %8s %9s %8s %8s %9s %9s %9s %9s%n",
+                "Endpoint", "Count", "Req/s", "Rejected", "Failed", "p50 ms", "p99 ms", "p999 ms", "Max ms");
+        for (Operation operation : Operation.values()) {
+            Endpoint endpoint = endpoints.get(operation);
+            LatencyHistogram latency = endpoint.latency;
+            System.out.printf("%-40s %8d %9.1f %8d %8d %9.3f %9.3f %9.3f %9.3f%n",
+                    operation.label, latency.getTotalCount(), latency.getTotalCount() / elapsed,
+                    endpoint.rejected.get(), endpoint.failed.get(),
+                    latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0, latency.getMax() / 1000.0);
+        }
+        for (Operation operation : Operation.values()) {
+            System.out.printf("%n%s%n", operation.label);
+            endpoints.get(operation).latency.printPercentileDistribution(System.out);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compares three views of ownership: the registry the node serves, the chain's transactions replayed
+     * in order, and what the clients expect after their successful requests. Also validates the chain.
+     */
+    private List<String> checkConsistency() throws Exception {
+        List<String> problems = new ArrayList<>();
+
+        JsonObject validation = gson.fromJson(
+                send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/blockchain/validate")).build()).body(),
+                JsonObject.class);
+        if (!validation.get("valid").getAsBoolean()) {
+            problems.add("the chain does not validate");
+        }
+
+        // Replay ownership from the chain, a page of transactions at a time
+        Map<String, String> chainOwners = new HashMap<>();
+        Integer cursor = null;
+        do {
+            String path = "/api/transactions?limit=1000" + (cursor == null ? "" : "&cursor=" + cursor);
+            JsonObject page = gson.fromJson(
+                    send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build()).body(), JsonObject.class);
+            for (JsonElement element : page.getAsJsonArray("transactions")) {
+                JsonObject transaction = element.getAsJsonObject();
+                String petId = transaction.get("petId").getAsString();
+                if ("CREATE_PET".equals(transaction.get("type").getAsString())) {
+                    chainOwners.put(petId, transaction.get("ownerAddress").getAsString());
+                } else if (!transaction.get("fromOwner").getAsString().equals(chainOwners.get(petId))) {
+                    problems.add("pet " + petId + " was traded by " + transaction.get("fromOwner").getAsString()
+                            + " while the chain says " + chainOwners.get(petId) + " owned it");
+                } else {
+                    chainOwners.put(petId, transaction.get("toOwner").getAsString());
+                }
+            }
+            JsonElement next = page.get("nextCursor");
+            cursor = next == null || next.isJsonNull() ? null : next.getAsInt();
+        } while (cursor != null);
+
+        Map<String, String> registryOwners = new HashMap<>();
+        JsonArray all = gson.fromJson(
+                send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/pets/all")).build()).body(), JsonArray.class);
+        for (JsonElement element : all) {
+            Pet pet = gson.fromJson(element, Pet.class);
+            registryOwners.put(pet.getId(), pet.getOwner());
+        }
+
+        if (!registryOwners.keySet().equals(chainOwners.keySet())) {
+            problems.add("the registry has " + registryOwners.size() + " pets but the chain created "
+                    + chainOwners.size());
+        }
+        for (Map.Entry<String, String> entry : chainOwners.entrySet()) {
+            String registryOwner = registryOwners.get(entry.getKey());
+            if (registryOwner != null && !registryOwner.equals(entry.getValue())) {
+                problems.add("pet " + entry.getKey() + " is owned by " + registryOwner
+                        + " in the registry but by " + entry.getValue() + " on the chain");
+            }
+        }
+        for (PetState pet : pets) {
+            String chainOwner = chainOwners.get(pet.id);
+            if (!pet.owner.getAddress().equals(chainOwner)) {
+                problems.add("pet " + pet.id + " should belong to " + pet.owner.getAddress()
+                        + " after the acknowledged requests, but the chain says " + chainOwner);
+            }
+        }
+        return problems;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MerkleProofTest {
+
+    @BeforeEach
+    void setUp() {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+    }
+
+    private Block mined(String data, String previousHash) {
+        Block block = new Block(data, previousHash);
+        block.mineBlock(ChainHub.difficulty);
+        ChainHub.addBlock(block);
+        return block;
+    }
+
+    @Test
+    void testBranchLeadsToRootForEveryLeaf() {
+        for (int size = 1; size <= 7; size++) {
+            List<String> transactions = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                transactions.add("tx" + i);
+            }
+            String root = MerkleTree.computeRoot(transactions);
+
+            for (int i = 0; i < size; i++) {
+                List<MerkleProof.Step> branch = MerkleTree.buildBranch(transactions, i);
+                assertEquals(root, MerkleTree.rootFromBranch("tx" + i, branch),
+                        "leaf " + i + " of " + size);
+                assertNotEquals(root, MerkleTree.rootFromBranch("forged", branch));
+            }
+        }
+    }
+
+    @Test
+    void testLeavesAndInnerNodesCannotBeSwapped() {
+        // An odd node isn't paired with itself, so repeating the last transaction changes the root
+        assertNotEquals(MerkleTree.computeRoot(List.of("a", "b", "c")),
+                MerkleTree.computeRoot(List.of("a", "b", "c", "c")));
+
+        // The concatenated children of an inner node don't hash to it as a transaction
+        String leafA = MerkleTree.computeRoot(List.of("a"));
+        String leafB = MerkleTree.computeRoot(List.of("b"));
+        assertNotEquals(MerkleTree.computeRoot(List.of("a", "b")), MerkleTree.rootFromBranch(leafA + leafB, List.of()));
+        assertNotEquals(MerkleTree.computeRoot(List.of("a", "b")), MerkleTree.computeRoot(List.of(leafA + leafB)));
+    }
+
+    @Test
+    void testBlockHashCommitsToMerkleRoot() {
+        Block block = mined("Genesis", "0");
+
+        assertNotNull(block.getMerkleRoot());
+        assertEquals(block.hash, block.calculateHeaderHash());
+        assertEquals(block.hash, new BlockHeader(block, 0).calculateHash());
+
+        block.setMerkleRoot(MerkleTree.computeRoot(List.of("something else")));
+        assertFalse(block.hasValidMerkleRoot());
+    }
+
+    @Test
+    void testProofVerifiesAgainstCheckpoint() {
+        Block genesis = mined("Genesis", "0");
+        Block withTx = mined(PetService.createTransactionData(new Wallet(), "Rex", 1L), genesis.hash);
+        mined("Later block", withTx.hash);
+
+        List<String> transactions = withTx.getTransactions();
+        Transaction transaction = PetService.parseTransactionFromBlock(withTx);
+        MerkleProof proof = new MerkleProof(transactions.get(0), transaction, withTx.hash, withTx.getMerkleRoot(),
+                MerkleTree.buildBranch(transactions, 0), genesis.hash, ChainHub.getHeadersFrom(1, 2));
+
+        assertTrue(MerkleProof.verify(proof, genesis.hash, ChainHub.difficulty));
+        assertFalse(MerkleProof.verify(proof, "some other checkpoint", ChainHub.difficulty));
+
+        // Without the parsed transaction there's nothing checked to read the owner from
+        proof.setTransaction(null);
+        assertFalse(MerkleProof.verify(proof, genesis.hash, ChainHub.difficulty));
+        proof.setTransaction(transaction);
+
+        proof.setTransactionData("Forged transaction");
+        assertFalse(MerkleProof.verify(proof, genesis.hash, ChainHub.difficulty));
+    }
+
+    @Test
+    void testProofRejectsTransactionThatDoesNotMatchItsData() {
+        Block genesis = mined("Genesis", "0");
+        Block withTx = mined(PetService.createTransactionData(new Wallet(), "Rex", 1L), genesis.hash);
+
+        List<String> transactions = withTx.getTransactions();
+        Transaction transaction = PetService.parseTransactionFromBlock(withTx);
+        MerkleProof proof = new MerkleProof(transactions.get(0), transaction, withTx.hash, withTx.getMerkleRoot(),
+                MerkleTree.buildBranch(transactions, 0), genesis.hash, ChainHub.getHeadersFrom(1, 1));
+        assertTrue(MerkleProof.verify(proof, genesis.hash, ChainHub.difficulty));
+
+        // The branch still proves the real data, but the parsed copy a client would read says otherwise
+        transaction.setOwnerAddress("mallory");
+        assertFalse(MerkleProof.verify(proof, genesis.hash, ChainHub.difficulty));
+    }
+}
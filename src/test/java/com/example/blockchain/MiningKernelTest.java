@@ -0,0 +1,44 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class MiningKernelTest {
+
+    @Test
+    void testVectorDigestsMatchScalar() {
+        assumeTrue(MiningKernel.isVectorAvailable(), "Vector API not available");
+
+        String prefix = StringUtil.applySha256("previous block") + System.currentTimeMillis();
+        String suffix = StringUtil.applySha256("merkle root");
+        for (int start : new int[] {0, 7, 9990, 99999, 1234567}) {
+            VectorSha256.MessageTemplate template =
+                    new VectorSha256.MessageTemplate(prefix, Integer.toString(start).length(), suffix);
+            int count = (int) Math.min(VectorSha256.lanes(), (long) template.maxNonce() - start + 1);
+            String[] digests = VectorSha256.digests(template, start, count);
+            for (int lane = 0; lane < count; lane++) {
+                assertEquals(StringUtil.applySha256(prefix + (start + lane) + suffix), digests[lane],
+                        "nonce " + (start + lane));
+            }
+        }
+    }
+
+    @Test
+    void testVectorSearchFindsSameNonceAsScalar() {
+        assumeTrue(MiningKernel.isVectorAvailable(), "Vector API not available");
+
+        Block block = new Block("Mining kernel test", "0");
+        int difficulty = 3;
+        block.mineBlock(difficulty);
+
+        // Scalar search from the same starting point
+        String prefix = block.previousHash + block.getTimeStamp();
+        int nonce = 0;
+        while (!StringUtil.applySha256(prefix + nonce + block.getMerkleRoot()).startsWith("000")) {
+            nonce++;
+        }
+        assertEquals(nonce, block.getNonce());
+        assertEquals(block.calculateHash(), block.hash);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.Gson;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistenceServiceTest {
+
+    @TempDir
+    Path dataDir;
+
+    @AfterEach
+    void tearDown() {
+        ChainHub.setDataDirectory("");
+        ChainHub.setColdStorage(-1, 1000);
+        ChainHub.reset();
+    }
+
+    @Test
+    void testStagedLoadRestoresChain() throws Exception {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+        ChainHub.setDataDirectory(dataDir.toString());
+        ChainHub.loadBlockchain(); // empty directory; saving needs a load first
+        String previous = ChainHub.GENESIS_PREVIOUS_HASH;
+        for (int i = 0; i < 3; i++) {
+            Block block = new Block("Block " + i, previous);
+            block.mineBlock(ChainHub.difficulty);
+            ChainHub.addBlock(block);
+            previous = block.hash;
+        }
+        String tipHash = ChainHub.getTipHash();
+        ChainHub.saveBlockchain();
+        ChainHub.reset();
+
+        PersistenceService persistence = new PersistenceService(dataDir.toString(), false, -1, 1000);
+        persistence.openStorage();
+        // Only the saved tip is known before loading starts
+        assertFalse(persistence.isReady());
+        assertEquals(2, persistence.getStatus().get("savedTipHeight"));
+        assertEquals(tipHash, persistence.getStatus().get("savedTipHash"));
+        assertEquals(-1, ChainHub.getHeight());
+
+        persistence.loadInBackground();
+        persistence.awaitLoaded();
+        assertTrue(persistence.isReady());
+        assertEquals(2, ChainHub.getHeight());
+        assertEquals(tipHash, ChainHub.getTipHash());
+        assertEquals(3, ChainHub.getHeadersFrom(0, 10).size());
+    }
+
+    @Test
+    void testCorruptChainFileFailsLoadAndIsNotOverwritten() throws Exception {
+        ChainHub.reset();
+        Files.writeString(dataDir.resolve("blockchain.json"), "[{\"hash\": \"00ab\", \"previousHash\"");
+
+        PersistenceService persistence = new PersistenceService(dataDir.toString(), false, -1, 1000);
+        persistence.openStorage();
+        persistence.loadInBackground();
+        assertThrows(Exception.class, persistence::awaitLoaded);
+
+        assertEquals(PersistenceService.Stage.FAILED, persistence.getStage());
+        assertFalse(persistence.isReady());
+        assertNotNull(persistence.getStatus().get("error"));
+        persistence.saveData();
+        assertEquals("[{\"hash\": \"00ab\", \"previousHash\"", Files.readString(dataDir.resolve("blockchain.json")));
+    }
+
+    @Test
+    void testOldBlocksAreSealedAndReadBack() throws Exception {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+        ChainHub.setDataDirectory(dataDir.toString());
+        ChainHub.loadBlockchain(); // empty directory; saving needs a load first
+        ChainHub.setColdStorage(5, 10);
+        List<String> hashes = new ArrayList<>();
+        String previous = ChainHub.GENESIS_PREVIOUS_HASH;
+        for (int i = 0; i < 27; i++) {
+            Block block = new Block("Block " + i, previous);
+            block.mineBlock(ChainHub.difficulty);
+            ChainHub.addBlock(block);
+            hashes.add(block.hash);
+            previous = block.hash;
+        }
+        ChainHub.saveBlockchain();
+
+        // Two segments of 10; the newest 7 blocks stay in blockchain.json
+        assertEquals(20, ChainHub.blockChain.sealedSize());
+        assertEquals(2, Files.list(dataDir.resolve("segments")).count());
+        assertEquals(7, new Gson().fromJson(Files.readString(dataDir.resolve("blockchain.json")), Block[].class).length);
+        assertEquals("Block 3", ChainHub.getBlock(hashes.get(3)).getData());
+        ChainHub.reset();
+
+        PersistenceService persistence = new PersistenceService(dataDir.toString(), false, 5, 10);
+        persistence.openStorage();
+        persistence.loadInBackground();
+        persistence.awaitLoaded();
+        assertEquals(26, ChainHub.getHeight());
+        assertEquals(20, ChainHub.blockChain.sealedSize());
+        assertEquals(hashes.get(12), ChainHub.blockChain.get(12).hash);
+        assertEquals("Block 15", ChainHub.getBlock(hashes.get(15)).getData());
+        assertTrue(ChainHub.isCanonical(hashes.get(0)));
+        assertTrue(ChainHub.isChainValid());
+    }
+
+    @Test
+    void testCorruptSegmentFailsLoadAndKeepsEverySegment() throws Exception {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+        ChainHub.setDataDirectory(dataDir.toString());
+        ChainHub.loadBlockchain();
+        ChainHub.setColdStorage(5, 10);
+        String previous = ChainHub.GENESIS_PREVIOUS_HASH;
+        for (int i = 0; i < 27; i++) {
+            Block block = new Block("Block " + i, previous);
+            block.mineBlock(ChainHub.difficulty);
+            ChainHub.addBlock(block);
+            previous = block.hash;
+        }
+        ChainHub.saveBlockchain();
+        ChainHub.reset();
+
+        Path segment = BlockSegment.fileFor(dataDir.resolve("segments"), 10);
+        byte[] garbage = "not a segment".getBytes();
+        Files.write(segment, garbage);
+        String hotBlocks = Files.readString(dataDir.resolve("blockchain.json"));
+
+        PersistenceService persistence = new PersistenceService(dataDir.toString(), false, 5, 10);
+        persistence.openStorage();
+        persistence.loadInBackground();
+        assertThrows(Exception.class, persistence::awaitLoaded);
+        assertEquals(PersistenceService.Stage.FAILED, persistence.getStage());
+
+        // Neither the shutdown save nor a direct save may touch the files
+        persistence.saveData();
+        assertThrows(IOException.class, ChainHub::saveBlockchain);
+        assertEquals(2, Files.list(dataDir.resolve("segments")).count());
+        assertArrayEquals(garbage, Files.readAllBytes(segment));
+        assertEquals(hotBlocks, Files.readString(dataDir.resolve("blockchain.json")));
+    }
+
+    @Test
+    void testLatestTransactionsMissingFromTheFilesAreFoundOnTheChain() throws Exception {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+        Gson gson = new Gson();
+        Wallet alice = new Wallet();
+        String petId = PetService.petIdFor(alice.getAddress(), "Rex", 1L);
+
+        // Files as saved before pet_latest_tx.json existed
+        Block create = new Block(PetService.createTransactionData(alice, "Rex", 1L), ChainHub.GENESIS_PREVIOUS_HASH);
+        create.mineBlock(ChainHub.difficulty);
+        Block next = new Block("Block 1", create.hash);
+        next.mineBlock(ChainHub.difficulty);
+        Files.writeString(dataDir.resolve("blockchain.json"), gson.toJson(List.of(create, next)));
+        Files.writeString(dataDir.resolve("pets.json"),
+                gson.toJson(Map.of(petId, new Pet(petId, "Rex", "Dragon", "Red", 1, alice.getAddress(), create.getTimeStamp()))));
+
+        PersistenceService persistence = new PersistenceService(dataDir.toString(), false, -1, 1000);
+        persistence.openStorage();
+        persistence.loadInBackground();
+        persistence.awaitLoaded();
+        assertEquals(create.hash, PetService.getLatestTransactionHash(petId));
+
+        PetService.savePetRegistry();
+        Map<?, ?> saved = gson.fromJson(Files.readString(dataDir.resolve("pet_latest_tx.json")), Map.class);
+        assertEquals(create.hash, saved.get(petId));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PetIndexTest {
+
+    private PetRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new PetRegistry();
+        registry.put(new Pet("p1", "Rex", "Dragon", "Red", 1, "alice", 10), null);
+        registry.put(new Pet("p2", "Ash", "Dragon", "Blue", 3, "bob", 20), null);
+        registry.put(new Pet("p3", "Kit", "Cat", "Red", 5, "alice", 30), null);
+        registry.put(new Pet("p4", "Bo", "Dragon", "Red", 4, "bob", 40), null);
+    }
+
+    private List<String> ids(PetIndex.Page page) {
+        return page.getPets().stream().map(Pet::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testFiltersCombine() {
+        PetIndex.Query query = new PetIndex.Query();
+        query.type = "Dragon";
+        query.color = "Red";
+        assertEquals(List.of("p1", "p4"), ids(registry.search(query)));
+
+        query.minRarity = 2;
+        query.maxRarity = 4;
+        assertEquals(List.of("p4"), ids(registry.search(query)));
+
+        query = new PetIndex.Query();
+        query.owner = "alice";
+        query.minRarity = 2;
+        assertEquals(List.of("p3"), ids(registry.search(query)));
+
+        query.type = "Unicorn";
+        assertEquals(0, registry.search(query).getTotal());
+    }
+
+    @Test
+    void testTradeAndRemoveUpdateIndexes() {
+        registry.setOwner("p1", "bob", 50);
+        registry.remove("p4");
+
+        PetIndex.Query query = new PetIndex.Query();
+        query.owner = "bob";
+        assertEquals(List.of("p1", "p2"), ids(registry.search(query)));
+
+        query.owner = "alice";
+        assertEquals(List.of("p3"), ids(registry.search(query)));
+
+        // A freed slot is reused by the next pet
+        registry.put(new Pet("p5", "Zed", "Fox", "Gold", 2, "carol", 60), null);
+        query = new PetIndex.Query();
+        query.color = "Red";
+        assertEquals(List.of("p1", "p3"), ids(registry.search(query)));
+        assertEquals(4, registry.search(new PetIndex.Query()).getTotal());
+    }
+
+    @Test
+    void testSortingAndPaging() {
+        PetIndex.Query query = new PetIndex.Query();
+        query.sort = "rarity";
+        query.descending = true;
+        query.size = 3;
+        PetIndex.Page first = registry.search(query);
+        assertEquals(List.of("p3", "p4", "p2"), ids(first));
+        assertEquals(4, first.getTotal());
+
+        query.page = 1;
+        assertEquals(List.of("p1"), ids(registry.search(query)));
+
+        query = new PetIndex.Query();
+        query.size = 2;
+        query.page = 1;
+        assertEquals(List.of("p3", "p4"), ids(registry.search(query)));
+
+        query.sort = "name";
+        query.page = 0;
+        assertEquals(List.of("p2", "p4"), ids(registry.search(query)));
+    }
+}
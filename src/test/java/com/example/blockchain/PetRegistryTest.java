@@ -0,0 +1,111 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PetRegistryTest {
+
+    private static String petId(int i) {
+        return StringUtil.applySha256("pet" + i).substring(0, 16);
+    }
+
+    private static Pet pet(String id, String owner) {
+        return new Pet(id, "Rex", "Dragon", "Red", 3, owner, 100);
+    }
+
+    @Test
+    void testPutGetAndResize() {
+        PetRegistry registry = new PetRegistry();
+        for (int i = 0; i < 5000; i++) {
+            registry.put(pet(petId(i), "owner" + (i % 7)), null);
+        }
+
+        assertEquals(5000, registry.size());
+        Pet pet = registry.get(petId(42));
+        assertEquals(petId(42), pet.getId());
+        assertEquals("Rex", pet.getName());
+        assertEquals("Dragon", pet.getType());
+        assertEquals("Red", pet.getColor());
+        assertEquals(3, pet.getRarity());
+        assertEquals("owner0", pet.getOwner());
+        assertNull(registry.get("ffffffffffffffff"));
+        assertEquals(7, registry.ownerCount());
+    }
+
+    @Test
+    void testRemoveKeepsOtherKeysReachable() {
+        PetRegistry registry = new PetRegistry();
+        for (int i = 0; i < 2000; i++) {
+            registry.put(pet(petId(i), "alice"), null);
+        }
+        // Removing every other key punches holes in the probe runs of the ones left
+        for (int i = 0; i < 2000; i += 2) {
+            assertTrue(registry.remove(petId(i)) >= 0);
+        }
+
+        assertEquals(1000, registry.size());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i % 2 == 1, registry.contains(petId(i)), "pet " + i);
+        }
+        assertEquals(-1, registry.remove(petId(0)));
+
+        // Freed records are reused and the pets come back intact
+        registry.put(pet(petId(0), "bob"), null);
+        assertEquals("bob", registry.get(petId(0)).getOwner());
+        List<Pet> owned = registry.getByOwner("bob");
+        assertEquals(1, owned.size());
+        assertEquals(petId(0), owned.get(0).getId());
+    }
+
+    @Test
+    void testBlockHashesAndNonCanonicalIds() {
+        PetRegistry registry = new PetRegistry();
+        String hash = StringUtil.applySha256("block");
+        registry.put(pet(petId(1), "alice"), hash);
+        registry.put(pet("handmade", "alice"), hash);
+        registry.put(pet("ABCDEF0123456789", "alice"), "not-a-hash");
+
+        assertEquals(hash, registry.getBlockHash(petId(1)));
+        assertEquals(hash, registry.getBlockHash("handmade"));
+        assertNull(registry.getBlockHash("ABCDEF0123456789"));
+        assertEquals("ABCDEF0123456789", registry.get("ABCDEF0123456789").getId());
+
+        assertEquals(registry.recordOf(petId(1)), registry.setOwner(petId(1), "bob", 200));
+        Pet traded = registry.get(petId(1));
+        assertEquals("bob", traded.getOwner());
+        assertEquals(200, traded.getTimeStamp());
+        assertEquals(-1, registry.setOwner("missing", "bob", 200));
+
+        registry.remove("handmade");
+        assertFalse(registry.contains("handmade"));
+        assertEquals(2, registry.getAll().size());
+    }
+
+    @Test
+    void testLatestTransactionHashes() {
+        PetRegistry registry = new PetRegistry();
+        String created = StringUtil.applySha256("create");
+        String traded = StringUtil.applySha256("trade");
+        for (int i = 0; i < 40; i++) {
+            registry.put(pet(petId(i), "alice"), created);
+        }
+        assertNull(registry.getLatestTxHash(petId(0)));
+        assertEquals(40, registry.missingLatestTxCount());
+
+        registry.setLatestTxHash(petId(0), created);
+        registry.setLatestTxHash(petId(39), traded);
+        assertEquals(created, registry.getLatestTxHash(petId(0)));
+        assertEquals(traded, registry.getLatestTxHash(petId(39)));
+        assertEquals(38, registry.missingLatestTxCount());
+
+        // Clearing, and a freed record reused by another pet, leave no stale hash behind
+        registry.setLatestTxHash(petId(39), null);
+        assertNull(registry.getLatestTxHash(petId(39)));
+        registry.remove(petId(0));
+        registry.put(pet(petId(100), "bob"), created);
+        assertNull(registry.getLatestTxHash(petId(100)));
+        registry.setLatestTxHash("missing", traded);
+        assertNull(registry.getLatestTxHash("missing"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    private ResponseCache cache;
+    private final AtomicInteger handlerCalls = new AtomicInteger();
+
+    // Stands in for the controller: counts calls and reports the chain height
+    private final HttpServlet handler = new HttpServlet() {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            handlerCalls.incrementAndGet();
+            response.setContentType("application/json");
+            response.getWriter().write("{\"height\":" + ChainHub.getHeight() + "}");
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+        cache = new ResponseCache(100);
+        cache.init();
+    }
+
+    private MockHttpServletResponse get(String path, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cache.doFilter(request, response, new MockFilterChain(handler));
+        return response;
+    }
+
+    private void appendBlock(String data) {
+        Block block = new Block(data, ChainHub.getTipHash());
+        block.mineBlock(ChainHub.difficulty);
+        assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(block));
+    }
+
+    @Test
+    void testServesFromCacheUntilAppend() throws Exception {
+        appendBlock("Genesis");
+        MockHttpServletResponse first = get("/api/stats", null);
+        MockHttpServletResponse second = get("/api/stats", null);
+        assertEquals(1, handlerCalls.get(), "The second read should come from the cache");
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertEquals("\"" + ChainHub.getTipHash() + "\"", second.getHeader("ETag"));
+
+        appendBlock("Second");
+        MockHttpServletResponse third = get("/api/stats", null);
+        assertEquals(2, handlerCalls.get(), "Appending a block must invalidate the cache");
+        assertEquals("{\"height\":1}", third.getContentAsString());
+    }
+
+    @Test
+    void testConditionalGet() throws Exception {
+        appendBlock("Genesis");
+        String etag = get("/api/pets/all", null).getHeader("ETag");
+
+        MockHttpServletResponse notModified = get("/api/pets/all", etag);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+
+        appendBlock("Second");
+        MockHttpServletResponse modified = get("/api/pets/all", etag);
+        assertEquals(200, modified.getStatus());
+        assertNotEquals(etag, modified.getHeader("ETag"));
+    }
+
+    @Test
+    void testUncachedPathsPassThrough() throws Exception {
+        get("/api/admission", null);
+        MockHttpServletResponse response = get("/api/admission", null);
+        assertEquals(2, handlerCalls.get());
+        assertNull(response.getHeader("ETag"));
+    }
+}
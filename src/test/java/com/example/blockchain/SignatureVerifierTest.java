@@ -0,0 +1,160 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.Gson;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignatureVerifierTest {
+
+    private final Gson gson = new Gson();
+
+    @BeforeEach
+    void setUp() {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+    }
+
+    private Block mined(String data, String previousHash) {
+        Block block = new Block(data, previousHash);
+        block.mineBlock(ChainHub.difficulty);
+        return block;
+    }
+
+    // A create of a pet named Rex signed by owner; its id is PetService.petIdFor(owner's address, "Rex", timestamp)
+    private String createData(Wallet owner, long timestamp) {
+        return PetService.createTransactionData(owner, "Rex", timestamp);
+    }
+
+    private String tradeData(Wallet from, String petId, String toOwner, String previousTxHash) {
+        String signature = from.sign(Wallet.tradeMessage(petId, from.getAddress(), toOwner, previousTxHash));
+        return gson.toJson(Map.of("type", "TRADE_PET", "petId", petId,
+                "fromOwner", from.getAddress(), "toOwner", toOwner, "previousTxHash", previousTxHash,
+                "publicKey", from.getPublicKey(), "signature", signature, "timestamp", 2L));
+    }
+
+    @Test
+    void testSignatureBindsKeyAndTrade() {
+        Wallet alice = new Wallet();
+        Wallet mallory = new Wallet();
+        String signature = alice.sign(Wallet.tradeMessage("pet", alice.getAddress(), "bob", "prev"));
+
+        assertTrue(SignatureVerifier.verifyTrade("pet", alice.getAddress(), "bob", "prev",
+                alice.getPublicKey(), signature));
+        assertFalse(SignatureVerifier.verifyTrade("pet", alice.getAddress(), "mallory", "prev",
+                alice.getPublicKey(), signature), "Changing the recipient must break the signature");
+        assertFalse(SignatureVerifier.verifyTrade("pet", alice.getAddress(), "bob", "prev",
+                mallory.getPublicKey(), mallory.sign(Wallet.tradeMessage("pet", alice.getAddress(), "bob", "prev"))),
+                "Only the key behind fromOwner may sign");
+    }
+
+    @Test
+    void testUnsignedTradeIsRejected() {
+        Wallet alice = new Wallet();
+        long created = System.nanoTime();
+        String petId = PetService.petIdFor(alice.getAddress(), "Rex", created);
+        Block genesis = mined(createData(alice, created), "0");
+        Block trade = mined(gson.toJson(Map.of("type", "TRADE_PET", "petId", petId,
+                "fromOwner", alice.getAddress(), "toOwner", "bob", "timestamp", 2L)), genesis.hash);
+
+        assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(genesis));
+        assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(trade));
+    }
+
+    @Test
+    void testUnsignedOrForgedCreateIsRejected() {
+        PetService.getAllPets(); // registers the registry listener
+        Wallet alice = new Wallet();
+        Wallet mallory = new Wallet();
+        long created = System.nanoTime();
+        String petId = PetService.petIdFor(alice.getAddress(), "Rex", created);
+
+        // No signature, a key that isn't alice's, and a signed create renamed to another pet id
+        String unsigned = gson.toJson(Map.of("type", "CREATE_PET", "petId", petId,
+                "ownerAddress", alice.getAddress(), "petName", "Rex", "timestamp", created));
+        String forged = PetService.createTransactionData(alice.getAddress(), "Rex", created, mallory.getPublicKey(),
+                mallory.sign(Wallet.createMessage(alice.getAddress(), "Rex", created)));
+        String renamed = createData(alice, created).replace(petId, "0123456789abcdef");
+        for (String data : List.of(unsigned, forged, renamed)) {
+            assertFalse(SignatureVerifier.verifyBlock(mined(data, "0")));
+            assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(mined(data, "0")));
+        }
+
+        // The signed create is accepted once; mining it again names a pet that already exists
+        Block genesis = mined(createData(alice, created), "0");
+        assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(genesis));
+        assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(mined(genesis.getData(), genesis.hash)));
+        assertEquals(alice.getAddress(), PetService.getPetById(petId).getOwner());
+    }
+
+    @Test
+    void testReplayedTradeInvalidatesChain() {
+        Wallet alice = new Wallet();
+        Wallet bob = new Wallet();
+        long created = System.nanoTime();
+        String petId = PetService.petIdFor(alice.getAddress(), "Rex", created);
+
+        Block genesis = mined(createData(alice, created), "0");
+        Block toBob = mined(tradeData(alice, petId, bob.getAddress(), genesis.hash), genesis.hash);
+        Block back = mined(tradeData(bob, petId, alice.getAddress(), toBob.hash), toBob.hash);
+        ChainHub.blockChain.addAll(List.of(genesis, toBob, back));
+        assertTrue(ChainHub.isChainValid());
+
+        // Re-mining alice's old signed trade would hand the pet to bob again without her consent
+        Block replay = mined(toBob.getData(), back.hash);
+        ChainHub.blockChain.add(replay);
+        assertFalse(ChainHub.isChainValid(), "A trade must reference the pet's latest transaction");
+    }
+
+    @Test
+    void testReplayedTradeIsRejectedWhenAdded() {
+        PetService.getAllPets(); // registers the registry listener
+        Wallet alice = new Wallet();
+        Wallet bob = new Wallet();
+        Wallet carol = new Wallet();
+        long created = System.nanoTime();
+        String petId = PetService.petIdFor(alice.getAddress(), "Rex", created);
+
+        Block genesis = mined(createData(alice, created), "0");
+        Block toBob = mined(tradeData(alice, petId, bob.getAddress(), genesis.hash), genesis.hash);
+        Block back = mined(tradeData(bob, petId, alice.getAddress(), toBob.hash), toBob.hash);
+        for (Block block : List.of(genesis, toBob, back)) {
+            assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(block));
+        }
+
+        // Alice's old trade is still correctly signed, but the pet has moved on since
+        assertEquals(ChainHub.AddResult.INVALID, ChainHub.addBlock(mined(toBob.getData(), back.hash)));
+        // Carol signs with her own key, but the pet isn't hers
+        assertEquals(ChainHub.AddResult.INVALID,
+                ChainHub.addBlock(mined(tradeData(carol, petId, bob.getAddress(), back.hash), back.hash)));
+
+        assertEquals(back.hash, ChainHub.getTipHash());
+        assertEquals(alice.getAddress(), PetService.getPetById(petId).getOwner());
+        assertTrue(ChainHub.isChainValid());
+    }
+
+    @Test
+    void testBatchVerificationMatchesSingleChecks() {
+        Wallet alice = new Wallet();
+        List<Block> blocks = new ArrayList<>();
+        String previous = "0";
+        for (int i = 0; i < 20; i++) {
+            String petId = "pet-" + i;
+            String data = i % 5 == 3
+                    ? tradeData(alice, petId, "bob", "wrong").replace("\"bob\"", "\"carol\"")
+                    : tradeData(alice, petId, "bob", "prev-" + i);
+            Block block = mined(data, previous);
+            blocks.add(block);
+            previous = block.hash;
+        }
+
+        boolean[] results = SignatureVerifier.verifyBlocks(blocks);
+        for (int i = 0; i < blocks.size(); i++) {
+            assertEquals(SignatureVerifier.verifyBlock(blocks.get(i)), results[i]);
+            assertEquals(i % 5 != 3, results[i]);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.blockchain;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimestampIndexTest {
+
+    @Test
+    void testRangeLookups() {
+        TimestampIndex index = new TimestampIndex();
+        for (long time : new long[] {10, 20, 20, 30, 40}) {
+            index.append(time);
+        }
+
+        assertEquals(1, index.firstAtOrAfter(20));
+        assertEquals(3, index.firstAfter(20));
+        assertEquals(0, index.firstAtOrAfter(0));
+        assertEquals(5, index.firstAtOrAfter(41));
+        assertEquals(5, index.firstAfter(Long.MAX_VALUE));
+
+        index.truncate(2);
+        assertEquals(2, index.size());
+        assertEquals(2, index.firstAtOrAfter(30));
+    }
+
+    @Test
+    void testOutOfOrderBlockIsInsideBothBounds() {
+        TimestampIndex index = new TimestampIndex();
+        for (long time : new long[] {10, 30, 20, 40}) {
+            index.append(time);
+        }
+
+        // The block stamped 20 follows one stamped 30; ranges around either time still cover both heights
+        assertEquals(20, index.timeAt(2));
+        assertEquals(1, index.firstAtOrAfter(25));
+        assertEquals(3, index.firstAfter(30));
+        assertEquals(1, index.firstAtOrAfter(20));
+        assertEquals(3, index.firstAfter(20));
+        assertEquals(1, index.firstAfter(15));
+    }
+
+    @Test
+    void testEarlierBlockAfterALaterOneIsBeforeTheEndBound() {
+        TimestampIndex index = new TimestampIndex();
+        for (long time : new long[] {1000, 3000, 500, 4000}) {
+            index.append(time);
+        }
+
+        // [0, 800] must reach height 2, stamped 500, even though height 1 is stamped 3000
+        assertEquals(0, index.firstAtOrAfter(0));
+        assertEquals(3, index.firstAfter(800));
+
+        // Without the block stamped 500, nothing is at or before 800
+        index.truncate(2);
+        assertEquals(0, index.firstAfter(800));
+        assertEquals(1, index.firstAfter(2000));
+        index.append(3500);
+        assertEquals(1, index.firstAfter(2000));
+    }
+
+    @Test
+    void testTransactionsInRangePageInChainOrder() {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+        Wallet alice = new Wallet();
+        List<String> ids = new ArrayList<>();
+
+        String previous = ChainHub.GENESIS_PREVIOUS_HASH;
+        for (int i = 0; i < 6; i++) {
+            ids.add(PetService.petIdFor(alice.getAddress(), "Pet " + i, 1L));
+            Block block = new Block(PetService.createTransactionData(alice, "Pet " + i, 1L), previous);
+            block.setTimeStamp(1000L * (i + 1));
+            block.setHash(block.calculateHash()); // the constructor's hash covered the old time
+            block.mineBlock(ChainHub.difficulty);
+            assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(block));
+            previous = block.hash;
+        }
+
+        // Blocks at 2000..5000 match; pages of 3 then 1
+        Map<String, Object> first = PetService.getTransactionsInRange(2000, 5000, null, 3);
+        assertEquals(List.of(ids.get(1), ids.get(2), ids.get(3)), petIds(first));
+        assertEquals(4, first.get("nextCursor"));
+
+        Map<String, Object> second = PetService.getTransactionsInRange(2000, 5000, (Integer) first.get("nextCursor"), 3);
+        assertEquals(List.of(ids.get(4)), petIds(second));
+        assertNull(second.get("nextCursor"));
+
+        assertTrue(petIds(PetService.getTransactionsInRange(7000, 9000, null, 10)).isEmpty());
+    }
+
+    @Test
+    void testTransactionsInRangeSkipBlocksStampedOutsideIt() {
+        ChainHub.reset();
+        ChainHub.difficulty = 2; // Lower difficulty for faster tests
+        Wallet alice = new Wallet();
+        List<String> ids = new ArrayList<>();
+
+        // The clock goes backwards at the third block
+        String previous = ChainHub.GENESIS_PREVIOUS_HASH;
+        long[] times = {1000, 3000, 500, 4000};
+        for (int i = 0; i < times.length; i++) {
+            ids.add(PetService.petIdFor(alice.getAddress(), "Pet " + i, 1L));
+            Block block = new Block(PetService.createTransactionData(alice, "Pet " + i, 1L), previous);
+            block.setTimeStamp(times[i]);
+            block.setHash(block.calculateHash()); // the constructor's hash covered the old time
+            block.mineBlock(ChainHub.difficulty);
+            assertEquals(ChainHub.AddResult.EXTENDED, ChainHub.addBlock(block));
+            previous = block.hash;
+        }
+
+        assertEquals(List.of(ids.get(1)), petIds(PetService.getTransactionsInRange(2000, 3500, null, 10)));
+        assertEquals(List.of(ids.get(1), ids.get(3)), petIds(PetService.getTransactionsInRange(2000, 5000, null, 10)));
+        assertEquals(List.of(ids.get(2)), petIds(PetService.getTransactionsInRange(0, 800, null, 10)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> petIds(Map<String, Object> page) {
+        return ((List<Transaction>) page.get("transactions")).stream()
+                .map(Transaction::getPetId)
+                .collect(Collectors.toList());
+    }
+}